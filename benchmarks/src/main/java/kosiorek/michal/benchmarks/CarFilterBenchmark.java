@@ -0,0 +1,47 @@
+package kosiorek.michal.benchmarks;
+
+import kosiorek.michal.model.enums.Color;
+import kosiorek.michal.services.CarService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx16g"})
+@State(Scope.Benchmark)
+public class CarFilterBenchmark {
+
+    private static final List<String> COMPONENTS = List.of("ABS", "BLUETOOTH");
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int size;
+
+    // color and component filters answered by bitmaps instead of sorted posting lists
+    @Param({"false", "true"})
+    private boolean bitmaps;
+
+    private CarService carService;
+
+    @Setup
+    public void setup() {
+        carService = new CarService(CarGenerator.generate(size));
+        if (bitmaps) {
+            carService.enableBitmapIndexes();
+        }
+    }
+
+    @Benchmark
+    public int countBlackCarsWithComponents() {
+        return carService.query().color(Color.BLACK).withAllComponents(COMPONENTS).count();
+    }
+
+    @Benchmark
+    public Object groupByColorAndCountWithComponents() {
+        return carService.groupByColorAndCount(COMPONENTS);
+    }
+
+}
@@ -0,0 +1,52 @@
+package kosiorek.michal.benchmarks;
+
+import kosiorek.michal.model.Car;
+import kosiorek.michal.model.enums.Color;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// deterministic synthetic cars - the same seed and count always give the same list
+public final class CarGenerator {
+
+    public static final long DEFAULT_SEED = 42;
+
+    private static final String[] MODELS = {"BMW", "MAZDA", "AUDI", "FIAT", "TOYOTA", "VOLVO", "SKODA", "FORD", "OPEL", "KIA"};
+    private static final String[] COMPONENTS = {"ABS", "AIR CONDITIONING", "BLUETOOTH", "ALLOY WHEELS", "GPS", "HEATED SEATS", "CRUISE CONTROL", "PARKING SENSORS"};
+    private static final Color[] COLORS = Color.values();
+
+    private CarGenerator() {
+    }
+
+    public static List<Car> generate(int count) {
+        return generate(count, DEFAULT_SEED);
+    }
+
+    public static List<Car> generate(int count, long seed) {
+
+        Random random = new Random(seed);
+        List<Car> cars = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            int componentsCount = 1 + random.nextInt(4);
+            List<String> components = new ArrayList<>(componentsCount);
+            int first = random.nextInt(COMPONENTS.length);
+            for (int c = 0; c < componentsCount; c++) {
+                components.add(COMPONENTS[(first + c) % COMPONENTS.length]);
+            }
+
+            cars.add(Car.builder()
+                    .model(MODELS[random.nextInt(MODELS.length)])
+                    .price(BigDecimal.valueOf(1_000_000 + random.nextInt(50_000_000), 2))
+                    .color(COLORS[random.nextInt(COLORS.length)])
+                    .mileage(random.nextInt(300_000))
+                    .components(components)
+                    .build());
+        }
+
+        return cars;
+    }
+
+}
@@ -0,0 +1,80 @@
+package kosiorek.michal.benchmarks;
+
+import kosiorek.michal.services.CarService;
+import kosiorek.michal.services.FixedPointCarStore;
+import kosiorek.michal.services.ListCarStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx16g"})
+@State(Scope.Benchmark)
+public class CarServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int size;
+
+    // analytics on a dedicated fork join pool
+    @Param({"false", "true"})
+    private boolean parallel;
+
+    // prices kept as long minor units next to BigDecimal, the price index of the (always indexed) service is keyed by them
+    @Param({"false", "true"})
+    private boolean fixedPoint;
+
+    private CarService carService;
+    private BigDecimal priceFrom;
+    private BigDecimal priceTo;
+
+    @Setup
+    public void setup() {
+        carService = new CarService(CarGenerator.generate(size), fixedPoint ? new FixedPointCarStore(new ListCarStore(), 2) : new ListCarStore());
+        if (parallel) {
+            carService.enableParallelMode(Runtime.getRuntime().availableProcessors(), 100_000);
+        }
+        // about 10% of generated prices
+        priceFrom = BigDecimal.valueOf(200_000_00L, 2);
+        priceTo = BigDecimal.valueOf(250_000_00L, 2);
+    }
+
+    @TearDown
+    public void tearDown() {
+        carService.disableParallelMode();
+    }
+
+    @Benchmark
+    public Object groupByColorAndCount() {
+        return carService.groupByColorAndCount();
+    }
+
+    @Benchmark
+    public Object groupByModelAndMostExpensiveCar() {
+        return carService.groupByModelAndMostExpensiveCar();
+    }
+
+    @Benchmark
+    public Object statistics() {
+        return carService.getStatistics();
+    }
+
+    @Benchmark
+    public Object getMapOfComponentsAndCarsWithThatComponent() {
+        return carService.getMapOfComponentsAndCarsWithThatComponent();
+    }
+
+    @Benchmark
+    public Object getCarsWithPriceBetween() {
+        return carService.getCarsWithPriceBetween(priceFrom, priceTo);
+    }
+
+    @Benchmark
+    public Object getCarWithTheBiggestPrice() {
+        return carService.getCarWithTheBiggestPrice();
+    }
+
+}
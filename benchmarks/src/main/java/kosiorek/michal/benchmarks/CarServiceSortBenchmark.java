@@ -0,0 +1,45 @@
+package kosiorek.michal.benchmarks;
+
+import kosiorek.michal.model.enums.SortType;
+import kosiorek.michal.services.CarService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx16g"})
+@State(Scope.Benchmark)
+public class CarServiceSortBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int size;
+
+    @Param({"MODEL", "PRICE", "MILEAGE", "COLOR"})
+    private SortType sortType;
+
+    private CarService carService;
+
+    @Setup
+    public void setup() {
+        carService = new CarService(CarGenerator.generate(size));
+    }
+
+    @Benchmark
+    public Object sortAscending() {
+        return carService.sort(sortType, false);
+    }
+
+    @Benchmark
+    public Object sortDescending() {
+        return carService.sort(sortType, true);
+    }
+
+    @Benchmark
+    public Object topFifty() {
+        return carService.getTopCars(sortType, 50);
+    }
+
+}
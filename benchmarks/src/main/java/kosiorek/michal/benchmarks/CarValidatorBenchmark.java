@@ -0,0 +1,64 @@
+package kosiorek.michal.benchmarks;
+
+import kosiorek.michal.model.Car;
+import kosiorek.michal.model.enums.Color;
+import kosiorek.michal.validators.CarValidator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CarValidatorBenchmark {
+
+    private static final List<String> COMPONENTS = List.of("ABS", "AIR CONDITIONING", "BLUETOOTH", "ALLOY WHEELS", "GPS");
+
+    // percentage of cars which break at least one rule
+    @Param({"0", "10"})
+    private int invalidPercent;
+
+    private List<Car> cars;
+    private CarValidator carValidator;
+    private LegacyCarValidator legacyCarValidator;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        cars = IntStream.range(0, 10_000)
+                .mapToObj(i -> Car.builder()
+                        .model(random.nextInt(100) < invalidPercent ? "Bmw" : "BMW SERIES")
+                        .price(BigDecimal.valueOf(100 + random.nextInt(1000)))
+                        .color(Color.values()[random.nextInt(Color.values().length)])
+                        .mileage(random.nextInt(200_000))
+                        .components(COMPONENTS.subList(0, 1 + random.nextInt(COMPONENTS.size())))
+                        .build())
+                .collect(Collectors.toList());
+        carValidator = new CarValidator();
+        legacyCarValidator = new LegacyCarValidator();
+    }
+
+    @Benchmark
+    public void ruleEngine(Blackhole blackhole) {
+        for (Car car : cars) {
+            blackhole.consume(carValidator.validate(car));
+        }
+    }
+
+    @Benchmark
+    public void legacyRegex(Blackhole blackhole) {
+        for (Car car : cars) {
+            blackhole.consume(legacyCarValidator.validate(car));
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+package kosiorek.michal.benchmarks;
+
+import kosiorek.michal.converters.CarsJsonConverter;
+import kosiorek.michal.model.Car;
+import kosiorek.michal.services.CarIngestionPipeline;
+import kosiorek.michal.services.CarService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx16g"})
+@State(Scope.Benchmark)
+public class JsonLoadingBenchmark {
+
+    private static final int SHARDS = 16;
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    private File jsonFile;
+    private File ndjsonFile;
+    private File exportFile;
+    private CarService carService;
+    // the same cars split into SHARDS json files
+    private File shardsDirectory;
+    private final List<String> shardFiles = new ArrayList<>();
+
+    @Setup
+    public void setup() throws IOException {
+        jsonFile = File.createTempFile("cars-benchmark", ".json");
+        ndjsonFile = File.createTempFile("cars-benchmark", ".ndjson");
+        exportFile = File.createTempFile("cars-benchmark-export", ".json");
+        new CarsJsonConverter(jsonFile.getAbsolutePath()).toJson(CarGenerator.generate(size));
+        carService = new CarService(CarGenerator.generate(size));
+        carService.exportToNdjson(ndjsonFile.getAbsolutePath());
+
+        shardsDirectory = Files.createTempDirectory("cars-benchmark-shards").toFile();
+        List<Car> cars = CarGenerator.generate(size);
+        for (int i = 0; i < SHARDS; i++) {
+            File shardFile = new File(shardsDirectory, "shard" + i + ".json");
+            new CarsJsonConverter(shardFile.getAbsolutePath()).toJson(cars.subList(i * size / SHARDS, (i + 1) * size / SHARDS));
+            shardFiles.add(shardFile.getAbsolutePath());
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(jsonFile.toPath());
+        Files.deleteIfExists(ndjsonFile.toPath());
+        Files.deleteIfExists(exportFile.toPath());
+        for (String shardFile : shardFiles) {
+            Files.deleteIfExists(new File(shardFile).toPath());
+        }
+        Files.deleteIfExists(shardsDirectory.toPath());
+    }
+
+    @Benchmark
+    public Object loadSequential() {
+        return new CarService(jsonFile.getAbsolutePath());
+    }
+
+    @Benchmark
+    public Object loadParallel() {
+        return new CarService(jsonFile.getAbsolutePath(), CarIngestionPipeline.parallel());
+    }
+
+    @Benchmark
+    public Object loadNdjsonSequential() {
+        return CarService.fromNdjson(ndjsonFile.getAbsolutePath(), CarIngestionPipeline.sequential());
+    }
+
+    @Benchmark
+    public Object loadNdjsonParallel() {
+        return CarService.fromNdjson(ndjsonFile.getAbsolutePath(), CarIngestionPipeline.parallel());
+    }
+
+    @Benchmark
+    public Object loadShardsSequential() {
+        return CarService.fromFiles(shardFiles, CarIngestionPipeline.sequential());
+    }
+
+    @Benchmark
+    public Object loadShardsParallel() {
+        return CarService.fromFiles(shardFiles, CarIngestionPipeline.parallel());
+    }
+
+    @Benchmark
+    public void exportPretty() {
+        carService.exportToJson(exportFile.getAbsolutePath(), true, false);
+    }
+
+    @Benchmark
+    public void exportCompact() {
+        carService.exportToJson(exportFile.getAbsolutePath(), false, false);
+    }
+
+    @Benchmark
+    public void exportCompactGzip() {
+        carService.exportToJson(exportFile.getAbsolutePath(), false, true);
+    }
+
+}
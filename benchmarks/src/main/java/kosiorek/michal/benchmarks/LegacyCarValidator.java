@@ -0,0 +1,42 @@
+package kosiorek.michal.benchmarks;
+
+import kosiorek.michal.model.Car;
+import kosiorek.michal.validators.Validator;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// regex based validator as it was before the rule engine, kept only as a benchmark baseline
+public class LegacyCarValidator implements Validator<Car> {
+    private Map<String, String> errors = new HashMap<>();
+
+    @Override
+    public Map<String, String> validate(Car car) {
+
+        errors.clear();
+
+        if (!isModelValid(car)) {
+            errors.put("model", "not valid: " + car.getModel());
+        }
+
+        if (!areComponentsValid(car)) {
+            errors.put("components", "not valid: " + car.getComponents());
+        }
+
+        return errors;
+    }
+
+    @Override
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    private boolean isModelValid(Car car) {
+        return car.getModel() != null && car.getModel().matches("[A-Z ]+");
+    }
+
+    private boolean areComponentsValid(Car car) {
+        return car.getComponents() != null && car.getComponents().stream().allMatch(c -> c.matches("[A-Z ]+"));
+    }
+
+}
@@ -2,7 +2,9 @@ package kosiorek.michal.converters;
 
 import kosiorek.michal.model.Car;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 public class CarsJsonConverter extends JsonConverter<List<Car>> {
 
@@ -10,4 +12,20 @@ public class CarsJsonConverter extends JsonConverter<List<Car>> {
         super(jsonFilename);
     }
 
+    // cars are read token by token, so memory does not depend on file size
+    public Stream<Car> streamFromJson() {
+        return fromJsonArray(Car.class);
+    }
+
+    // cars are written one by one, so whole list never has to be built, e.g. for export of a large car service
+    public void toJson(Iterator<Car> cars, boolean prettyPrinting, boolean gzip) {
+        toJsonArray(cars, Car.class, prettyPrinting, gzip);
+    }
+
+    public void toJson(Stream<Car> cars, boolean prettyPrinting, boolean gzip) {
+        try (cars) {
+            toJson(cars.iterator(), prettyPrinting, gzip);
+        }
+    }
+
 }
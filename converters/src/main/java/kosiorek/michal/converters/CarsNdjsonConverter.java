@@ -0,0 +1,192 @@
+package kosiorek.michal.converters;
+
+import com.google.gson.Gson;
+import kosiorek.michal.exceptions.ExceptionCode;
+import kosiorek.michal.exceptions.MyException;
+import kosiorek.michal.model.Car;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/*
+ * Newline delimited json - one car per line, empty lines are skipped.
+ * File can be split into byte ranges on line boundaries and every range parsed independently, e.g. on its own thread.
+ */
+public class CarsNdjsonConverter {
+
+    public static final long DEFAULT_RANGE_SIZE = 8 << 20;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final byte NEW_LINE = '\n';
+
+    private final String ndjsonFilename;
+    private final Gson gson = new Gson();
+
+    public CarsNdjsonConverter(String ndjsonFilename) {
+        this.ndjsonFilename = ndjsonFilename;
+    }
+
+    public void toNdjson(final Iterator<Car> cars) {
+
+        if (cars == null) {
+            throw new MyException(ExceptionCode.JSON_PARSE, "CARS ARE NULL");
+        }
+
+        try (FileChannel channel = FileChannel.open(path(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             Writer writer = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+
+            while (cars.hasNext()) {
+                // compact gson never writes a new line inside of a value
+                gson.toJson(cars.next(), Car.class, writer);
+                writer.write(NEW_LINE);
+            }
+        } catch (Exception e) {
+            throw new MyException(ExceptionCode.JSON_PARSE, "ERROR WHILE WRITING NDJSON");
+        }
+    }
+
+    public void toNdjson(final Stream<Car> cars) {
+        try (cars) {
+            toNdjson(cars.iterator());
+        }
+    }
+
+    // whole file as one lazy stream
+    public Stream<Car> streamFromNdjson() {
+        long[] boundaries = split(DEFAULT_RANGE_SIZE);
+        return IntStream.range(0, boundaries.length - 1)
+                .boxed()
+                .flatMap(i -> streamRange(boundaries[i], boundaries[i + 1]));
+    }
+
+    // range boundaries - range i is [boundaries[i], boundaries[i + 1]), every range starts at the beginning of a line
+    // and is not longer than rangeSize unless a single line is longer
+    public long[] split(long rangeSize) {
+
+        if (rangeSize < 1) {
+            throw new MyException(ExceptionCode.JSON_PARSE, "RANGE SIZE MUST BE POSITIVE");
+        }
+
+        // a range is mapped as one buffer
+        rangeSize = Math.min(rangeSize, Integer.MAX_VALUE);
+
+        try (FileChannel channel = FileChannel.open(path(), StandardOpenOption.READ)) {
+
+            long size = channel.size();
+            long[] boundaries = new long[(int) Math.min(size / rangeSize + 2, Integer.MAX_VALUE)];
+            int count = 1;
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+            long position = 0;
+            while (size - position > rangeSize) {
+                long lineStart = nextLineStart(channel, position + rangeSize - 1, buffer);
+                if (lineStart >= size) {
+                    break;
+                }
+                boundaries[count++] = lineStart;
+                position = lineStart;
+            }
+            boundaries[count++] = size;
+
+            long[] result = new long[count];
+            System.arraycopy(boundaries, 0, result, 0, count);
+            return result;
+
+        } catch (MyException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new MyException(ExceptionCode.JSON_PARSE, "ERROR WHILE SPLITTING NDJSON");
+        }
+    }
+
+    // cars of lines in [from, to), range is memory mapped and parsed lazily, stream has to be closed to release the file
+    public Stream<Car> streamRange(long from, long to) {
+
+        if (from < 0 || to < from || to - from > Integer.MAX_VALUE) {
+            throw new MyException(ExceptionCode.JSON_PARSE, "NDJSON RANGE IS NOT VALID");
+        }
+
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        } catch (Exception e) {
+            throw new MyException(ExceptionCode.JSON_PARSE, "ERROR WHILE OPENING NDJSON");
+        }
+
+        Spliterator<Car> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super Car> action) {
+                while (buffer.hasRemaining()) {
+                    int lineStart = buffer.position();
+                    int lineEnd = lineStart;
+                    while (lineEnd < buffer.limit() && buffer.get(lineEnd) != NEW_LINE) {
+                        lineEnd++;
+                    }
+                    buffer.position(Math.min(lineEnd + 1, buffer.limit()));
+
+                    String line = line(buffer, lineStart, lineEnd);
+                    if (line.isBlank()) {
+                        continue;
+                    }
+
+                    Car car;
+                    try {
+                        car = gson.fromJson(line, Car.class);
+                    } catch (Exception e) {
+                        throw new MyException(ExceptionCode.JSON_PARSE, "ERROR WHILE PARSING NDJSON LINE AT BYTE " + (from + lineStart));
+                    }
+                    action.accept(car);
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    private static String line(ByteBuffer buffer, int lineStart, int lineEnd) {
+        byte[] bytes = new byte[lineEnd - lineStart];
+        buffer.duplicate().position(lineStart).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // position right after the first new line at or after position, channel size when there is none
+    private static long nextLineStart(FileChannel channel, long position, ByteBuffer buffer) throws Exception {
+
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == NEW_LINE) {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+    }
+
+    private Path path() {
+        return Paths.get(ndjsonFilename);
+    }
+
+}
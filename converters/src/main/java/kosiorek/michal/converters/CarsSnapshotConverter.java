@@ -0,0 +1,262 @@
+package kosiorek.michal.converters;
+
+import kosiorek.michal.exceptions.ExceptionCode;
+import kosiorek.michal.exceptions.MyException;
+import kosiorek.michal.model.Car;
+import kosiorek.michal.model.enums.Color;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/*
+ * Compact binary snapshot of cars.
+ *
+ * header:  magic, version, record count, dictionary size (ints), dictionary length, body length, CRC32 of body (longs)
+ * body:    dictionary - models and components as (int length, UTF-8 bytes)
+ *          fixed width columns, one value per car:
+ *          model id (int), unscaled price (long), price scale (byte), color ordinal (byte), mileage (int),
+ *          components count (int)
+ *          component ids (int) of all cars one after another
+ * null values are stored as -1 ids / counts and Byte.MIN_VALUE price scale
+ */
+public class CarsSnapshotConverter {
+
+    private static final int MAGIC = 0x43415253;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 * Integer.BYTES + 3 * Long.BYTES;
+    private static final int NULL_ID = -1;
+    private static final byte NULL_SCALE = Byte.MIN_VALUE;
+    private static final Color[] COLORS = Color.values();
+
+    private final String snapshotFilename;
+
+    public CarsSnapshotConverter(String snapshotFilename) {
+        this.snapshotFilename = snapshotFilename;
+    }
+
+    public void toSnapshot(final Collection<Car> cars) {
+
+        if (cars == null) {
+            throw new MyException(ExceptionCode.SNAPSHOT, "CARS ARE NULL");
+        }
+
+        Map<String, Integer> dictionaryIds = new HashMap<>();
+        List<String> dictionary = new ArrayList<>();
+        for (Car car : cars) {
+            idOf(car.getModel(), dictionaryIds, dictionary);
+            if (car.getComponents() != null) {
+                car.getComponents().forEach(component -> idOf(component, dictionaryIds, dictionary));
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(path(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            channel.position(HEADER_SIZE);
+            CRC32 crc32 = new CRC32();
+            CheckedOutputStream checkedOutputStream = new CheckedOutputStream(Channels.newOutputStream(channel), crc32);
+            DataOutputStream body = new DataOutputStream(new BufferedOutputStream(checkedOutputStream, 1 << 16));
+
+            long dictionaryLength = 0;
+            for (String value : dictionary) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                body.writeInt(bytes.length);
+                body.write(bytes);
+                dictionaryLength += Integer.BYTES + bytes.length;
+            }
+            for (Car car : cars) {
+                body.writeInt(idOf(car.getModel(), dictionaryIds, dictionary));
+            }
+            for (Car car : cars) {
+                body.writeLong(car.getPrice() == null ? 0 : unscaledPrice(car.getPrice()));
+            }
+            for (Car car : cars) {
+                body.writeByte(car.getPrice() == null ? NULL_SCALE : priceScale(car.getPrice()));
+            }
+            for (Car car : cars) {
+                body.writeByte(car.getColor() == null ? NULL_ID : car.getColor().ordinal());
+            }
+            for (Car car : cars) {
+                body.writeInt(car.getMileage());
+            }
+            for (Car car : cars) {
+                body.writeInt(car.getComponents() == null ? NULL_ID : car.getComponents().size());
+            }
+            for (Car car : cars) {
+                if (car.getComponents() != null) {
+                    for (String component : car.getComponents()) {
+                        body.writeInt(idOf(component, dictionaryIds, dictionary));
+                    }
+                }
+            }
+            body.flush();
+
+            long bodyLength = channel.position() - HEADER_SIZE;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                    .putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(cars.size())
+                    .putInt(dictionary.size())
+                    .putLong(dictionaryLength)
+                    .putLong(bodyLength)
+                    .putLong(crc32.getValue());
+            header.flip();
+            channel.write(header, 0);
+            channel.force(true);
+
+        } catch (MyException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new MyException(ExceptionCode.SNAPSHOT, "ERROR WHILE WRITING SNAPSHOT");
+        }
+    }
+
+    // cars are read from memory mapped file without any validation
+    public List<Car> fromSnapshot() {
+
+        try (FileChannel channel = FileChannel.open(path(), StandardOpenOption.READ)) {
+
+            if (channel.size() < HEADER_SIZE) {
+                throw new MyException(ExceptionCode.SNAPSHOT, "SNAPSHOT IS TOO SHORT");
+            }
+
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new MyException(ExceptionCode.SNAPSHOT, "NOT A CARS SNAPSHOT OR UNSUPPORTED VERSION");
+            }
+            int count = header.getInt();
+            int dictionarySize = header.getInt();
+            long dictionaryLength = header.getLong();
+            long bodyLength = header.getLong();
+            long checksum = header.getLong();
+
+            if (count < 0 || dictionarySize < 0 || channel.size() != HEADER_SIZE + bodyLength) {
+                throw new MyException(ExceptionCode.SNAPSHOT, "SNAPSHOT IS DAMAGED");
+            }
+
+            // every region is mapped separately so the whole file does not have to fit one buffer
+            CRC32 crc32 = new CRC32();
+            long position = HEADER_SIZE;
+
+            ByteBuffer dictionaryBuffer = map(channel, position, dictionaryLength, crc32);
+            position += dictionaryLength;
+            List<String> dictionary = new ArrayList<>(dictionarySize);
+            for (int i = 0; i < dictionarySize; i++) {
+                byte[] bytes = new byte[dictionaryBuffer.getInt()];
+                dictionaryBuffer.get(bytes);
+                dictionary.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+
+            ByteBuffer modelIds = map(channel, position, (long) count * Integer.BYTES, crc32);
+            position += (long) count * Integer.BYTES;
+            ByteBuffer unscaledPrices = map(channel, position, (long) count * Long.BYTES, crc32);
+            position += (long) count * Long.BYTES;
+            ByteBuffer priceScales = map(channel, position, count, crc32);
+            position += count;
+            ByteBuffer colors = map(channel, position, count, crc32);
+            position += count;
+            ByteBuffer mileages = map(channel, position, (long) count * Integer.BYTES, crc32);
+            position += (long) count * Integer.BYTES;
+            ByteBuffer componentCounts = map(channel, position, (long) count * Integer.BYTES, crc32);
+            position += (long) count * Integer.BYTES;
+            ByteBuffer componentIds = map(channel, position, HEADER_SIZE + bodyLength - position, crc32);
+
+            if (crc32.getValue() != checksum) {
+                throw new MyException(ExceptionCode.SNAPSHOT, "SNAPSHOT CHECKSUM DOES NOT MATCH");
+            }
+
+            List<Car> cars = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                byte scale = priceScales.get();
+                long unscaledPrice = unscaledPrices.getLong();
+                byte color = colors.get();
+                int componentsCount = componentCounts.getInt();
+
+                List<String> components = null;
+                if (componentsCount != NULL_ID) {
+                    components = new ArrayList<>(componentsCount);
+                    for (int c = 0; c < componentsCount; c++) {
+                        components.add(valueOf(componentIds.getInt(), dictionary));
+                    }
+                }
+
+                cars.add(Car.builder()
+                        .model(valueOf(modelIds.getInt(), dictionary))
+                        .price(scale == NULL_SCALE ? null : BigDecimal.valueOf(unscaledPrice, scale))
+                        .color(color == NULL_ID ? null : COLORS[color])
+                        .mileage(mileages.getInt())
+                        .components(components)
+                        .build());
+            }
+
+            return cars;
+
+        } catch (MyException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new MyException(ExceptionCode.SNAPSHOT, "ERROR WHILE READING SNAPSHOT");
+        }
+    }
+
+    private Path path() {
+        return Paths.get(snapshotFilename);
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, long size, CRC32 crc32) throws IOException {
+
+        if (size < 0 || position + size > channel.size()) {
+            throw new MyException(ExceptionCode.SNAPSHOT, "SNAPSHOT IS DAMAGED");
+        }
+
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        crc32.update(buffer.duplicate());
+        return buffer;
+    }
+
+    private static int idOf(String value, Map<String, Integer> dictionaryIds, List<String> dictionary) {
+
+        if (value == null) {
+            return NULL_ID;
+        }
+
+        return dictionaryIds.computeIfAbsent(value, v -> {
+            dictionary.add(v);
+            return dictionary.size() - 1;
+        });
+    }
+
+    private static String valueOf(int id, List<String> dictionary) {
+        return id == NULL_ID ? null : dictionary.get(id);
+    }
+
+    private static long unscaledPrice(BigDecimal price) {
+
+        if (price.unscaledValue().bitLength() > 63) {
+            throw new MyException(ExceptionCode.SNAPSHOT, "PRICE IS TOO BIG FOR SNAPSHOT: " + price);
+        }
+
+        return price.unscaledValue().longValue();
+    }
+
+    private static byte priceScale(BigDecimal price) {
+
+        if (price.scale() <= NULL_SCALE || price.scale() > Byte.MAX_VALUE) {
+            throw new MyException(ExceptionCode.SNAPSHOT, "PRICE SCALE IS NOT SUPPORTED IN SNAPSHOT: " + price);
+        }
+
+        return (byte) price.scale();
+    }
+
+}
@@ -2,18 +2,34 @@ package kosiorek.michal.converters;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import kosiorek.michal.exceptions.ExceptionCode;
 import kosiorek.michal.exceptions.MyException;
 
 
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.*;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 public abstract class JsonConverter<T> {
 
+    private static final int BUFFER_SIZE = 1 << 16;
+
     private final String jsonFilename;
     private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
     private final Type type = ((ParameterizedType)getClass().getGenericSuperclass()).getActualTypeArguments()[0];
@@ -44,4 +60,94 @@ public abstract class JsonConverter<T> {
         }
     }
 
+    // conversion from elements to json array written one element at a time through a buffer, compact unless
+    // prettyPrinting is set, gzip compressed when gzip is set
+    protected <E> void toJsonArray(final Iterator<E> elements, final Type elementType, boolean prettyPrinting, boolean gzip) {
+
+        if (elements == null) {
+            throw new MyException(ExceptionCode.JSON_PARSE, "ELEMENTS ARE NULL");
+        }
+
+        try (FileChannel channel = FileChannel.open(Paths.get(jsonFilename), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            OutputStream outputStream = Channels.newOutputStream(channel);
+            outputStream = gzip ? new GZIPOutputStream(outputStream, BUFFER_SIZE) : new BufferedOutputStream(outputStream, BUFFER_SIZE);
+
+            try (JsonWriter jsonWriter = new JsonWriter(new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), BUFFER_SIZE))) {
+                if (prettyPrinting) {
+                    jsonWriter.setIndent("  ");
+                }
+                jsonWriter.beginArray();
+                while (elements.hasNext()) {
+                    gson.toJson(elements.next(), elementType, jsonWriter);
+                }
+                jsonWriter.endArray();
+            }
+        } catch (Exception e) {
+            throw new MyException(ExceptionCode.JSON_PARSE, "ERROR WHILE WRITING JSON ARRAY");
+        }
+    }
+
+    // conversion from json array to lazy stream of elements - only one element is held in memory at a time,
+    // stream has to be closed to release the file, gzip compressed file is recognized by its header
+    protected <E> Stream<E> fromJsonArray(final Type elementType) {
+
+        JsonReader jsonReader = null;
+        try {
+            jsonReader = new JsonReader(new BufferedReader(new InputStreamReader(open(), StandardCharsets.UTF_8)));
+            jsonReader.beginArray();
+        } catch (Exception e) {
+            close(jsonReader);
+            throw new MyException(ExceptionCode.JSON_PARSE, "ERROR WHILE OPENING JSON ARRAY");
+        }
+
+        final JsonReader reader = jsonReader;
+        Spliterator<E> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED) {
+            private boolean finished;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super E> action) {
+                if (finished) {
+                    return false;
+                }
+                E element;
+                try {
+                    if (!reader.hasNext()) {
+                        reader.endArray();
+                        finished = true;
+                        return false;
+                    }
+                    element = gson.fromJson(reader, elementType);
+                } catch (Exception e) {
+                    throw new MyException(ExceptionCode.JSON_PARSE, "ERROR WHILE PARSING JSON ARRAY ELEMENT");
+                }
+                action.accept(element);
+                return true;
+            }
+        };
+
+        return StreamSupport.stream(spliterator, false).onClose(() -> close(reader));
+    }
+
+    private InputStream open() throws IOException {
+
+        InputStream inputStream = new BufferedInputStream(new FileInputStream(jsonFilename), BUFFER_SIZE);
+        inputStream.mark(2);
+        int magic = inputStream.read() | inputStream.read() << 8;
+        inputStream.reset();
+
+        return magic == GZIPInputStream.GZIP_MAGIC ? new GZIPInputStream(inputStream, BUFFER_SIZE) : inputStream;
+    }
+
+    private void close(JsonReader jsonReader) {
+        if (jsonReader == null) {
+            return;
+        }
+        try {
+            jsonReader.close();
+        } catch (IOException e) {
+            throw new MyException(ExceptionCode.JSON_PARSE, "ERROR WHILE CLOSING JSON FILE");
+        }
+    }
+
 }
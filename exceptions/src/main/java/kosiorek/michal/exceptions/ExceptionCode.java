@@ -4,7 +4,8 @@ public enum ExceptionCode {
 
     OTHER ("UNCLASSIFIED EXCEPTION"),
     VALIDATION ("VALIDATION EXCEPTION"),
-    JSON_PARSE ("JSON PARSE EXCEPTION");
+    JSON_PARSE ("JSON PARSE EXCEPTION"),
+    SNAPSHOT ("SNAPSHOT EXCEPTION");
 
     private String description;
 
@@ -9,7 +9,8 @@ public class App
     public static void main(String[] args) {
 
         var filename = "testcars.json";
-        var menuService = new MenuService(filename);
+        var dataDirectory = "cars-data";
+        var menuService = new MenuService(filename, dataDirectory);
         menuService.mainMenu();
     }
 
@@ -4,17 +4,36 @@ import kosiorek.michal.exceptions.MyException;
 import kosiorek.michal.model.Car;
 import kosiorek.michal.model.enums.SortType;
 import kosiorek.michal.services.CarService;
+import kosiorek.michal.services.PersistentCarService;
 import kosiorek.michal.services.UserDataService;
+import kosiorek.michal.services.ValidationReport;
 
 import java.math.BigDecimal;
 
 public class MenuService {
 
     private CarService carService;
+    private PersistentCarService persistentCarService;
     private UserDataService userDataService = new UserDataService();
 
     public MenuService(String filename) {
         this.carService = new CarService(filename);
+        printValidationReport();
+    }
+
+    // added cars are saved in dataDirectory, cars from filename are used only when the directory is empty
+    public MenuService(String filename, String dataDirectory) {
+        this.persistentCarService = PersistentCarService.open(dataDirectory, filename, PersistentCarService.DEFAULT_COMPACTION_THRESHOLD);
+        this.carService = persistentCarService.getCarService();
+        printValidationReport();
+    }
+
+    private void printValidationReport() {
+        ValidationReport validationReport = carService.getIngestionResult().getValidationReport();
+        if (!validationReport.isEmpty()) {
+            System.out.println(validationReport);
+            validationReport.getSamples().forEach((carNumber, errors) -> System.out.println("CAR NO. " + carNumber + " " + errors));
+        }
     }
 
     public void mainMenu() {
@@ -63,6 +82,9 @@ public class MenuService {
                             break;
                         case "12":
                             userDataService.close();
+                            if (persistentCarService != null) {
+                                persistentCarService.close();
+                            }
                             System.out.println("The End");
                             return;
                         default:
@@ -103,7 +125,12 @@ public class MenuService {
                 .components(userDataService.getComponents())
                 .price(userDataService.getBigDecimal("Enter car price:"))
                 .build();
-        carService.addCar(car);
+
+        if (persistentCarService != null) {
+            persistentCarService.addCar(car);
+        } else {
+            carService.addCar(car);
+        }
     }
 
     private void option2() {
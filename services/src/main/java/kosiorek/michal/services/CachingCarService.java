@@ -0,0 +1,187 @@
+package kosiorek.michal.services;
+
+import kosiorek.michal.exceptions.ExceptionCode;
+import kosiorek.michal.exceptions.MyException;
+import kosiorek.michal.model.Car;
+import kosiorek.michal.model.enums.Color;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+// remembers query results of a car service per operation and arguments, every result is tagged with car service
+// version it was computed for, so adding a car makes all older results stale - least recently used results are
+// evicted above maxEntries, cached results are unmodifiable
+//
+// queries run in parallel outside of the cache lock, concurrent calls with the same key wait for one computation,
+// cars have to be added through this wrapper - it blocks queries only while a car is being added
+public class CachingCarService {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+    private final CarService carService;
+    private final Map<List<Object>, CachedResult> cache;
+    // queries read the car service together, adding a car excludes them
+    private final ReadWriteLock carServiceLock = new ReentrantReadWriteLock();
+    private long hits;
+    private long misses;
+
+    public CachingCarService(CarService carService) {
+        this(carService, DEFAULT_MAX_ENTRIES);
+    }
+
+    public CachingCarService(CarService carService, int maxEntries) {
+
+        if (carService == null) {
+            throw new MyException(ExceptionCode.OTHER, "Car service is null");
+        }
+
+        if (maxEntries < 1) {
+            throw new MyException(ExceptionCode.OTHER, "Cache size must be positive");
+        }
+
+        this.carService = carService;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, CachedResult> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    // uncached operations are called directly
+    public CarService getCarService() {
+        return carService;
+    }
+
+    public void addCar(Car car) {
+        carServiceLock.writeLock().lock();
+        try {
+            carService.addCar(car);
+        } finally {
+            carServiceLock.writeLock().unlock();
+        }
+    }
+
+    public Map<String, Car> groupByModelAndMostExpensiveCar() {
+        return cached(List.of(CarOperation.GROUP_BY_MODEL_AND_MOST_EXPENSIVE_CAR),
+                () -> Collections.unmodifiableMap(carService.groupByModelAndMostExpensiveCar()));
+    }
+
+    public Map<Color, Long> groupByColorAndCount() {
+        return cached(List.of(CarOperation.GROUP_BY_COLOR_AND_COUNT),
+                () -> Collections.unmodifiableMap(carService.groupByColorAndCount()));
+    }
+
+    // order of components does not matter, they are cached as a set
+    public Map<Color, Long> groupByColorAndCount(Collection<String> components) {
+
+        if (components == null) {
+            return carService.groupByColorAndCount(null);
+        }
+
+        return cached(List.of(CarOperation.GROUP_BY_COLOR_AND_COUNT, Set.copyOf(components)),
+                () -> Collections.unmodifiableMap(carService.groupByColorAndCount(components)));
+    }
+
+    public List<Car> getCarsWithPriceBetween(BigDecimal priceFrom, BigDecimal priceTo) {
+        return cached(List.of(CarOperation.CARS_WITH_PRICE_BETWEEN, priceFrom, priceTo),
+                () -> Collections.unmodifiableList(carService.getCarsWithPriceBetween(priceFrom, priceTo)));
+    }
+
+    public List<Car> deleteCarsWithMileageLowerThan(double x) {
+        return cached(List.of(CarOperation.DELETE_CARS_WITH_MILEAGE_LOWER_THAN, x),
+                () -> Collections.unmodifiableList(carService.deleteCarsWithMileageLowerThan(x)));
+    }
+
+    public List<Car> getCarWithTheBiggestPrice() {
+        return cached(List.of(CarOperation.CAR_WITH_THE_BIGGEST_PRICE),
+                () -> Collections.unmodifiableList(carService.getCarWithTheBiggestPrice()));
+    }
+
+    public CarStatistics getStatistics() {
+        return cached(List.of(CarOperation.STATISTICS), carService::getStatistics);
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    // BigDecimal arguments are equal only with the same scale, e.g. 100 and 100.00 are cached separately
+    @SuppressWarnings("unchecked")
+    private <T> T cached(List<Object> key, Supplier<T> query) {
+
+        carServiceLock.readLock().lock();
+        try {
+            long version = carService.getVersion();
+            CompletableFuture<Object> result;
+            boolean computes = false;
+
+            // only lookup and insert hold the cache lock
+            synchronized (this) {
+                CachedResult cachedResult = cache.get(key);
+                if (cachedResult != null && cachedResult.version == version) {
+                    hits++;
+                    result = cachedResult.result;
+                } else {
+                    misses++;
+                    result = new CompletableFuture<>();
+                    cache.put(key, new CachedResult(version, result));
+                    computes = true;
+                }
+            }
+
+            if (computes) {
+                try {
+                    result.complete(query.get());
+                } catch (RuntimeException | Error e) {
+                    forget(key, result);
+                    result.completeExceptionally(e);
+                    throw e;
+                }
+            }
+
+            return (T) result.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        } finally {
+            carServiceLock.readLock().unlock();
+        }
+    }
+
+    // failed query is not cached, next call computes it again
+    private synchronized void forget(List<Object> key, CompletableFuture<Object> result) {
+        CachedResult cachedResult = cache.get(key);
+        if (cachedResult != null && cachedResult.result == result) {
+            cache.remove(key);
+        }
+    }
+
+    private static class CachedResult {
+
+        private final long version;
+        private final CompletableFuture<Object> result;
+
+        private CachedResult(long version, CompletableFuture<Object> result) {
+            this.version = version;
+            this.result = result;
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+package kosiorek.michal.services;
+
+import kosiorek.michal.model.Car;
+import kosiorek.michal.model.enums.Color;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.stream.Collectors;
+
+// aggregates updated with every added car, reads do not depend on number of cars
+class CarAggregates {
+
+    private final long[] colorCounts = new long[Color.values().length];
+    private final Map<String, Integer> mostExpensiveByModel = new HashMap<>();
+    private final Map<String, BigDecimal> maxPriceByModel = new HashMap<>();
+    private BigDecimal maxPrice;
+    private final IntArrayList maxPriceOrdinals = new IntArrayList();
+    private final CarStatisticsAccumulator statisticsAccumulator = new CarStatisticsAccumulator(false);
+
+    private Map<Color, Long> colorCountsView;
+    private CarStatistics statistics;
+
+    void add(Car car, int ordinal) {
+
+        if (car.getColor() != null) {
+            colorCounts[car.getColor().ordinal()]++;
+        }
+
+        BigDecimal price = car.getPrice();
+        if (price != null) {
+            if (car.getModel() != null) {
+                BigDecimal modelMaxPrice = maxPriceByModel.get(car.getModel());
+                if (modelMaxPrice == null || price.compareTo(modelMaxPrice) > 0) {
+                    maxPriceByModel.put(car.getModel(), price);
+                    mostExpensiveByModel.put(car.getModel(), ordinal);
+                }
+            }
+
+            int comparison = maxPrice == null ? 1 : price.compareTo(maxPrice);
+            if (comparison > 0) {
+                maxPrice = price;
+                maxPriceOrdinals.clear();
+            }
+            if (comparison >= 0) {
+                maxPriceOrdinals.add(ordinal);
+            }
+        }
+
+        statisticsAccumulator.accept(car);
+
+        // read views are rebuilt lazily on the next read
+        colorCountsView = null;
+        statistics = null;
+    }
+
+    // colors with at least one car, the most popular first
+    Map<Color, Long> getColorCounts() {
+
+        if (colorCountsView == null) {
+            colorCountsView = Arrays.stream(Color.values())
+                    .filter(color -> colorCounts[color.ordinal()] > 0)
+                    .sorted((c1, c2) -> Long.compare(colorCounts[c2.ordinal()], colorCounts[c1.ordinal()]))
+                    .collect(Collectors.toMap(color -> color, color -> colorCounts[color.ordinal()], Long::max, LinkedHashMap::new));
+        }
+
+        return colorCountsView;
+    }
+
+    Map<String, Integer> getMostExpensiveByModel() {
+        return Collections.unmodifiableMap(mostExpensiveByModel);
+    }
+
+    IntArrayList getMaxPriceOrdinals() {
+        return maxPriceOrdinals;
+    }
+
+    CarStatistics getStatistics() {
+
+        if (statistics == null) {
+            statistics = statisticsAccumulator.finish();
+        }
+
+        return statistics;
+    }
+
+}
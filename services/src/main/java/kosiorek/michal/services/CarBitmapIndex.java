@@ -0,0 +1,234 @@
+package kosiorek.michal.services;
+
+import kosiorek.michal.model.Car;
+import kosiorek.michal.model.enums.Color;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+// one bitmap of car ordinals per color and per component, predicates are answered with and / or / and not of bitmap
+// words - colors are dense so they are always plain bitmaps, components switch between sorted ordinals and a bitmap
+// depending on which one is smaller, like array and bitmap containers of Roaring bitmaps (here one container per component)
+class CarBitmapIndex {
+
+    // a component with fewer cars always keeps sorted ordinals
+    static final int SPARSE_LIMIT = 4096;
+
+    private static final Color[] COLORS = Color.values();
+
+    private final long[][] colorWords = new long[COLORS.length][];
+    private final Map<String, Posting> componentPostings = new HashMap<>();
+    private int size;
+
+    CarBitmapIndex() {
+        Arrays.fill(colorWords, new long[0]);
+    }
+
+    void add(Car car, int ordinal) {
+
+        if (car.getColor() != null) {
+            colorWords[car.getColor().ordinal()] = set(colorWords[car.getColor().ordinal()], ordinal);
+        }
+        if (car.getComponents() != null) {
+            for (String component : car.getComponents()) {
+                componentPostings.computeIfAbsent(component, c -> new Posting()).add(ordinal);
+            }
+        }
+        size = Math.max(size, ordinal + 1);
+    }
+
+    // cars matching every given condition, null conditions are skipped, a car needs one component of every any group,
+    // an empty any group matches no car
+    BitSet match(Color color, Collection<String> allComponents, Collection<? extends Collection<String>> anyComponents, Collection<String> noneComponents) {
+        return BitSet.valueOf(matchWords(color, allComponents, anyComponents, noneComponents));
+    }
+
+    long[] matchWords(Color color, Collection<String> allComponents, Collection<? extends Collection<String>> anyComponents, Collection<String> noneComponents) {
+
+        long[] result = new long[wordCount(size)];
+        Arrays.fill(result, -1L);
+        if (size % Long.SIZE != 0) {
+            result[result.length - 1] = -1L >>> (Long.SIZE - size % Long.SIZE);
+        }
+
+        if (color != null) {
+            long[] words = colorWords[color.ordinal()];
+            for (int w = 0; w < result.length; w++) {
+                result[w] &= w < words.length ? words[w] : 0;
+            }
+        }
+        if (allComponents != null) {
+            for (String component : allComponents) {
+                Posting posting = componentPostings.get(component);
+                if (posting == null) {
+                    return new long[0];
+                }
+                posting.andInto(result);
+            }
+        }
+        if (anyComponents != null) {
+            long[] any = new long[result.length];
+            for (Collection<String> group : anyComponents) {
+                Arrays.fill(any, 0);
+                for (String component : group) {
+                    Posting posting = componentPostings.get(component);
+                    if (posting != null) {
+                        posting.orInto(any);
+                    }
+                }
+                for (int w = 0; w < result.length; w++) {
+                    result[w] &= any[w];
+                }
+            }
+        }
+        if (noneComponents != null) {
+            for (String component : noneComponents) {
+                Posting posting = componentPostings.get(component);
+                if (posting != null) {
+                    posting.andNotInto(result);
+                }
+            }
+        }
+        return result;
+    }
+
+    // number of cars of every color among filtered ones (words of matchWords), indexed by color ordinal - counted
+    // word by word without creating any bitmap
+    long[] colorCounts(long[] filter) {
+
+        long[] counts = new long[COLORS.length];
+        for (int i = 0; i < COLORS.length; i++) {
+            long[] words = colorWords[i];
+            for (int w = 0; w < words.length && w < filter.length; w++) {
+                counts[i] += Long.bitCount(words[w] & filter[w]);
+            }
+        }
+        return counts;
+    }
+
+    boolean isSparse(String component) {
+        Posting posting = componentPostings.get(component);
+        return posting != null && posting.words == null;
+    }
+
+    private static int wordCount(int bits) {
+        return (bits + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    // grows words when needed, doubling like array lists do
+    private static long[] set(long[] words, int ordinal) {
+        int word = ordinal >>> 6;
+        if (word >= words.length) {
+            words = Arrays.copyOf(words, Math.max(word + 1, words.length * 2));
+        }
+        words[word] |= 1L << ordinal;
+        return words;
+    }
+
+    // ordinals of cars with one component, sorted ints while that is smaller than a bitmap of all ordinals up to the last one
+    private static class Posting {
+
+        private int[] ordinals = new int[4];
+        private long[] words;
+        private int count;
+        private int lastOrdinal = -1;
+
+        private void add(int ordinal) {
+
+            // the same component listed twice in one car is stored once
+            if (ordinal == lastOrdinal) {
+                return;
+            }
+            lastOrdinal = ordinal;
+            count++;
+
+            if (words != null) {
+                words = set(words, ordinal);
+                // bitmap twice as big as sorted ints would be - the component became rare
+                if ((long) ordinal + 1 > (long) count * 64) {
+                    toSparse();
+                }
+                return;
+            }
+
+            if (count > ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, ordinals.length * 2);
+            }
+            ordinals[count - 1] = ordinal;
+            if (count >= SPARSE_LIMIT && (long) count * 32 >= (long) ordinal + 1) {
+                toDense();
+            }
+        }
+
+        private void toDense() {
+            words = new long[wordCount(lastOrdinal + 1)];
+            for (int i = 0; i < count; i++) {
+                words[ordinals[i] >>> 6] |= 1L << ordinals[i];
+            }
+            ordinals = null;
+        }
+
+        private void toSparse() {
+            ordinals = new int[count];
+            int i = 0;
+            for (int w = 0; w < words.length; w++) {
+                for (long word = words[w]; word != 0; word &= word - 1) {
+                    ordinals[i++] = w * Long.SIZE + Long.numberOfTrailingZeros(word);
+                }
+            }
+            words = null;
+        }
+
+        private void andInto(long[] result) {
+
+            if (words != null) {
+                for (int w = 0; w < result.length; w++) {
+                    result[w] &= w < words.length ? words[w] : 0;
+                }
+                return;
+            }
+
+            // ordinals are sorted, so every result word is masked with bits of its own ordinals
+            int i = 0;
+            for (int w = 0; w < result.length; w++) {
+                long mask = 0;
+                while (i < count && ordinals[i] >>> 6 == w) {
+                    mask |= 1L << ordinals[i++];
+                }
+                result[w] &= mask;
+            }
+        }
+
+        private void orInto(long[] result) {
+
+            if (words != null) {
+                for (int w = 0; w < result.length && w < words.length; w++) {
+                    result[w] |= words[w];
+                }
+                return;
+            }
+
+            for (int i = 0; i < count && ordinals[i] >>> 6 < result.length; i++) {
+                result[ordinals[i] >>> 6] |= 1L << ordinals[i];
+            }
+        }
+
+        private void andNotInto(long[] result) {
+
+            if (words != null) {
+                for (int w = 0; w < result.length && w < words.length; w++) {
+                    result[w] &= ~words[w];
+                }
+                return;
+            }
+
+            for (int i = 0; i < count && ordinals[i] >>> 6 < result.length; i++) {
+                result[ordinals[i] >>> 6] &= ~(1L << ordinals[i]);
+            }
+        }
+    }
+
+}
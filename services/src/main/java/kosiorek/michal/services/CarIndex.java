@@ -0,0 +1,54 @@
+package kosiorek.michal.services;
+
+import kosiorek.michal.model.Car;
+import kosiorek.michal.model.enums.Color;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Map;
+
+// answers car service queries with car ordinals, every returned ordinals array is sorted (insertion order)
+interface CarIndex {
+
+    // false when every query is a scan, so combining several of them would cost several scans
+    boolean hasIndexes();
+
+    void add(Car car, int ordinal);
+
+    int[] withPriceBetween(BigDecimal priceFrom, BigDecimal priceTo);
+
+    int[] withMileageAtLeast(int mileageFrom);
+
+    int[] withModel(String model);
+
+    int[] withColor(Color color);
+
+    // colors which have at least one car
+    Map<Color, Long> countByColor();
+
+    // model -> ordinal of the first of its most expensive cars
+    Map<String, Integer> mostExpensiveByModel();
+
+    // component -> ordinals of cars with that component
+    Map<String, int[]> withComponents();
+
+    int[] withAllComponents(Collection<String> components);
+
+    int[] withAnyComponents(Collection<String> components);
+
+    // upper bounds of sizes of the results above, counting may stop as soon as it is above max - queries use them
+    // to leave filters which match most of the cars to the pass over cars instead of listing their ordinals
+
+    int countPriceBetween(BigDecimal priceFrom, BigDecimal priceTo, int max);
+
+    int countMileageAtLeast(int mileageFrom, int max);
+
+    int countModel(String model);
+
+    int countColor(Color color);
+
+    int countAllComponents(Collection<String> components);
+
+    int countAnyComponents(Collection<String> components, int max);
+
+}
@@ -0,0 +1,343 @@
+package kosiorek.michal.services;
+
+import kosiorek.michal.exceptions.ExceptionCode;
+import kosiorek.michal.exceptions.MyException;
+import kosiorek.michal.model.Car;
+import kosiorek.michal.validators.CarValidator;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+// splits incoming cars into chunks and validates them on a fixed pool, validation messages are built only for report samples
+public class CarIngestionPipeline {
+
+    public static final int DEFAULT_CHUNK_SIZE = 4096;
+
+    private final int parallelism;
+    private final int chunkSize;
+    private final StringDictionary stringDictionary;
+
+    // every pipeline has its own dictionary, so strings of one load do not fill a dictionary used by other loads
+    public CarIngestionPipeline(int parallelism, int chunkSize) {
+        this(parallelism, chunkSize, new StringDictionary(StringDictionary.DEFAULT_MAX_SIZE));
+    }
+
+    // models and components of valid cars are replaced with canonical instances from stringDictionary (invalid cars
+    // never get to the dictionary), e.g. StringDictionary.shared() to share strings between many loads,
+    // without dictionary (null) every car keeps its own strings
+    public CarIngestionPipeline(int parallelism, int chunkSize, StringDictionary stringDictionary) {
+
+        if (parallelism < 1 || chunkSize < 1) {
+            throw new MyException(ExceptionCode.OTHER, "Ingestion parallelism and chunk size must be positive");
+        }
+
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+        this.stringDictionary = stringDictionary;
+    }
+
+    public static CarIngestionPipeline sequential() {
+        return new CarIngestionPipeline(1, DEFAULT_CHUNK_SIZE);
+    }
+
+    public static CarIngestionPipeline parallel() {
+        return new CarIngestionPipeline(Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_SIZE);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public StringDictionary getStringDictionary() {
+        return stringDictionary;
+    }
+
+    // valid cars are passed to the sink in input order, always from the calling thread
+    public IngestionResult ingest(Stream<Car> carsStream, Consumer<Car> sink) {
+
+        long start = System.nanoTime();
+        long valid = 0;
+        ValidationReport.Builder errors = new ValidationReport.Builder(ValidationReport.DEFAULT_SAMPLE_SIZE);
+
+        Iterator<Car> iterator = carsStream.iterator();
+        int processed = 0;
+
+        if (parallelism == 1) {
+            while (iterator.hasNext()) {
+                List<Car> chunk = nextChunk(iterator);
+                valid += validateChunk(chunk, processed + 1).mergeInto(sink, errors, 0);
+                processed += chunk.size();
+            }
+            return new IngestionResult(valid, errors.build(), processed, System.nanoTime() - start);
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(parallelism);
+        // bounded number of chunks in flight keeps memory flat when parsing is faster than validation
+        Deque<Future<ChunkResult>> inFlight = new ArrayDeque<>();
+
+        try {
+            while (iterator.hasNext()) {
+                List<Car> chunk = nextChunk(iterator);
+                int firstCarNumber = processed + 1;
+                inFlight.addLast(executorService.submit(() -> validateChunk(chunk, firstCarNumber)));
+                processed += chunk.size();
+
+                if (inFlight.size() >= 2 * parallelism) {
+                    valid += await(inFlight.removeFirst()).mergeInto(sink, errors, 0);
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                valid += await(inFlight.removeFirst()).mergeInto(sink, errors, 0);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        return new IngestionResult(valid, errors.build(), processed, System.nanoTime() - start);
+    }
+
+    // every part is parsed and validated on its own worker, e.g. byte ranges of ndjson file, so parsing scales too -
+    // valid cars are passed to the sink in input order, always from the calling thread
+    public IngestionResult ingest(List<Supplier<Stream<Car>>> parts, Consumer<Car> sink) {
+
+        long start = System.nanoTime();
+        long valid = 0;
+        ValidationReport.Builder errors = new ValidationReport.Builder(ValidationReport.DEFAULT_SAMPLE_SIZE);
+        int processed = 0;
+
+        if (parallelism == 1) {
+            for (Supplier<Stream<Car>> part : parts) {
+                ChunkResult partResult = validatePart(part);
+                valid += partResult.mergeInto(sink, errors, processed);
+                processed += partResult.size;
+            }
+            return new IngestionResult(valid, errors.build(), processed, System.nanoTime() - start);
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(parallelism);
+        Deque<Future<ChunkResult>> inFlight = new ArrayDeque<>();
+
+        try {
+            for (Supplier<Stream<Car>> part : parts) {
+                inFlight.addLast(executorService.submit(() -> validatePart(part)));
+
+                if (inFlight.size() >= 2 * parallelism) {
+                    ChunkResult partResult = await(inFlight.removeFirst());
+                    valid += partResult.mergeInto(sink, errors, processed);
+                    processed += partResult.size;
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                ChunkResult partResult = await(inFlight.removeFirst());
+                valid += partResult.mergeInto(sink, errors, processed);
+                processed += partResult.size;
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        return new IngestionResult(valid, errors.build(), processed, System.nanoTime() - start);
+    }
+
+    // like ingest(parts, sink) but every shard is loaded on its own - a shard which can not be parsed (e.g. missing
+    // or broken file) is reported in its shard result and adds no cars, the other shards are loaded anyway,
+    // at most 2 * parallelism shards are held in memory, the calling thread waits for the oldest one before submitting more
+    public IngestionResult ingestShards(Map<String, Supplier<Stream<Car>>> shards, Consumer<Car> sink) {
+
+        long start = System.nanoTime();
+        long valid = 0;
+        ValidationReport.Builder errors = new ValidationReport.Builder(ValidationReport.DEFAULT_SAMPLE_SIZE);
+        List<ShardResult> shardResults = new ArrayList<>(shards.size());
+        int processed = 0;
+
+        ExecutorService executorService = parallelism == 1 ? null : Executors.newFixedThreadPool(parallelism);
+        Deque<Future<Shard>> inFlight = new ArrayDeque<>();
+
+        try {
+            for (Map.Entry<String, Supplier<Stream<Car>>> entry : shards.entrySet()) {
+                Supplier<Shard> shard = () -> loadShard(entry.getKey(), entry.getValue());
+                inFlight.addLast(executorService == null ? CompletableFuture.completedFuture(shard.get()) : executorService.submit(shard::get));
+
+                if (inFlight.size() >= 2 * parallelism) {
+                    Shard loaded = awaitShard(inFlight.removeFirst());
+                    valid += loaded.mergeInto(sink, errors, processed, shardResults);
+                    processed += loaded.processedCount();
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                Shard loaded = awaitShard(inFlight.removeFirst());
+                valid += loaded.mergeInto(sink, errors, processed, shardResults);
+                processed += loaded.processedCount();
+            }
+        } finally {
+            if (executorService != null) {
+                executorService.shutdownNow();
+            }
+        }
+
+        return new IngestionResult(valid, errors.build(), processed, System.nanoTime() - start, shardResults);
+    }
+
+    private Shard loadShard(String name, Supplier<Stream<Car>> cars) {
+        long start = System.nanoTime();
+        try {
+            return new Shard(name, validatePart(cars), System.nanoTime() - start, null);
+        } catch (RuntimeException e) {
+            return new Shard(name, null, System.nanoTime() - start, e);
+        }
+    }
+
+    // car numbers in the result start from 1, they are shifted when the part is merged
+    private ChunkResult validatePart(Supplier<Stream<Car>> part) {
+        try (Stream<Car> cars = part.get()) {
+            List<Car> chunk = new ArrayList<>();
+            cars.forEach(chunk::add);
+            return validateChunk(chunk, 1);
+        }
+    }
+
+    // valid car with canonical model and components, a copy is made when any string was replaced,
+    // so cars of the caller are never changed
+    private Car canonical(Car car) {
+
+        if (stringDictionary == null) {
+            return car;
+        }
+
+        String model = stringDictionary.intern(car.getModel());
+        List<String> components = car.getComponents();
+        List<String> canonicalComponents = components;
+        for (int i = 0; components != null && i < components.size(); i++) {
+            String component = stringDictionary.intern(components.get(i));
+            if (component != components.get(i)) {
+                if (canonicalComponents == components) {
+                    canonicalComponents = new ArrayList<>(components);
+                }
+                canonicalComponents.set(i, component);
+            }
+        }
+
+        if (model == car.getModel() && canonicalComponents == components) {
+            return car;
+        }
+
+        return Car.builder()
+                .model(model)
+                .price(car.getPrice())
+                .color(car.getColor())
+                .mileage(car.getMileage())
+                .components(canonicalComponents)
+                .build();
+    }
+
+    private List<Car> nextChunk(Iterator<Car> iterator) {
+        List<Car> chunk = new ArrayList<>(chunkSize);
+        while (chunk.size() < chunkSize && iterator.hasNext()) {
+            chunk.add(iterator.next());
+        }
+        return chunk;
+    }
+
+    // only broken rules are kept for invalid cars, messages are built when the chunk is merged and only while
+    // the report of the whole ingestion needs samples - at most DEFAULT_SAMPLE_SIZE per ingestion however dirty the input is
+    private ChunkResult validateChunk(List<Car> chunk, int firstCarNumber) {
+
+        ChunkResult chunkResult = new ChunkResult(chunk.size());
+
+        for (int i = 0; i < chunk.size(); i++) {
+            Car car = chunk.get(i);
+            int failedRules = CarValidator.failedRules(car);
+
+            if (failedRules == 0) {
+                chunkResult.cars.add(canonical(car));
+            } else {
+                chunkResult.errors.add(firstCarNumber + i, failedRules, null);
+                chunkResult.invalidCars.add(car);
+            }
+        }
+
+        return chunkResult;
+    }
+
+    private static ChunkResult await(Future<ChunkResult> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MyException(ExceptionCode.OTHER, "Car ingestion interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof MyException) {
+                throw (MyException) e.getCause();
+            }
+            throw new MyException(ExceptionCode.VALIDATION, "Car ingestion failed: " + e.getCause());
+        }
+    }
+
+    private static Shard awaitShard(Future<Shard> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MyException(ExceptionCode.OTHER, "Car ingestion interrupted");
+        } catch (ExecutionException e) {
+            throw new MyException(ExceptionCode.OTHER, "Car ingestion failed: " + e.getCause());
+        }
+    }
+
+    private static class Shard {
+
+        private final String name;
+        private final ChunkResult chunkResult;
+        private final long elapsedNanos;
+        private final RuntimeException error;
+
+        private Shard(String name, ChunkResult chunkResult, long elapsedNanos, RuntimeException error) {
+            this.name = name;
+            this.chunkResult = chunkResult;
+            this.elapsedNanos = elapsedNanos;
+            this.error = error;
+        }
+
+        private int processedCount() {
+            return chunkResult == null ? 0 : chunkResult.size;
+        }
+
+        private int mergeInto(Consumer<Car> sink, ValidationReport.Builder allErrors, int carNumberShift, List<ShardResult> shardResults) {
+            int valid = chunkResult == null ? 0 : chunkResult.mergeInto(sink, allErrors, carNumberShift);
+            shardResults.add(new ShardResult(name, valid, processedCount(), elapsedNanos, error));
+            return valid;
+        }
+    }
+
+    private static class ChunkResult {
+
+        private final int size;
+        private final List<Car> cars;
+        private final ValidationReport.Builder errors = new ValidationReport.Builder(0);
+        // in the same order as cars in errors, kept only to build sample messages on merge
+        private final List<Car> invalidCars = new ArrayList<>();
+
+        private ChunkResult(int chunkSize) {
+            this.size = chunkSize;
+            this.cars = new ArrayList<>(chunkSize);
+        }
+
+        private int mergeInto(Consumer<Car> sink, ValidationReport.Builder allErrors, int carNumberShift) {
+            cars.forEach(sink);
+            allErrors.merge(errors, carNumberShift, i -> new HashMap<>(new CarValidator().validate(invalidCars.get(i))));
+            return cars.size();
+        }
+    }
+
+}
@@ -0,0 +1,27 @@
+package kosiorek.michal.services;
+
+// car service operations measured by CarServiceMetrics
+public enum CarOperation {
+
+    LOAD_JSON,
+    LOAD_NDJSON,
+    LOAD_FILES,
+    LOAD_SNAPSHOT,
+    SAVE_SNAPSHOT,
+    EXPORT_JSON,
+    EXPORT_NDJSON,
+    ADD_CAR,
+    SORT,
+    DELETE_CARS_WITH_MILEAGE_LOWER_THAN,
+    GROUP_BY_COLOR_AND_COUNT,
+    GROUP_BY_MODEL_AND_MOST_EXPENSIVE_CAR,
+    STATISTICS,
+    CAR_WITH_THE_BIGGEST_PRICE,
+    CARS_WITH_SORTED_COMPONENTS,
+    MAP_OF_COMPONENTS_AND_CARS,
+    CARS_WITH_ALL_COMPONENTS,
+    CARS_WITH_ANY_COMPONENTS,
+    CARS_WITH_PRICE_BETWEEN,
+    QUERY
+
+}
@@ -0,0 +1,398 @@
+package kosiorek.michal.services;
+
+import kosiorek.michal.exceptions.ExceptionCode;
+import kosiorek.michal.exceptions.MyException;
+import kosiorek.michal.model.Car;
+import kosiorek.michal.model.enums.Color;
+import kosiorek.michal.model.enums.SortType;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/*
+ * Lazily evaluated query over a car service, e.g.
+ * carService.query().priceBetween(a, b).mileageAtLeast(x).color(Color.BLACK).sortBy(SortType.PRICE, false).limit(20).list()
+ *
+ * nothing is computed until list, select or count is called - then all steps run as one pass:
+ * price, mileage, model, color and component filters are answered by indexes when the service has them (color and
+ * component filters by bitmaps when they are enabled), remaining
+ * filters are checked on store columns and cars are created only for ordinals which passed them,
+ * without sorting the pass stops at limit, with sorting only limit best cars are kept in a bounded heap
+ *
+ * without sorting an index filter which matches more than 1 / UNSELECTIVE_SHARE of cars is not listed from the index,
+ * it is checked on store columns by the pass instead - e.g. mileageAtLeast(0).limit(20) reads about 20 cars
+ */
+public class CarQuery {
+
+    static final int UNSELECTIVE_SHARE = 4;
+
+    private final CarService carService;
+    private final CarStore cars;
+    private final CarIndex carIndex;
+    private final CarBitmapIndex bitmapIndex;
+
+    private BigDecimal priceFrom;
+    private BigDecimal priceTo;
+    private Integer mileageFrom;
+    private String model;
+    private Color color;
+    private Set<String> allComponents;
+    // every withAnyComponents call is one group, a car needs at least one component of every group
+    private List<Set<String>> anyComponents;
+    private Set<String> noneComponents;
+    private Predicate<Car> predicate;
+    private SortType sortType;
+    private boolean descending;
+    private int limit = Integer.MAX_VALUE;
+
+    // filters which can be answered by an index or bitmaps instead of checking every car
+    private enum IndexedFilter {
+        PRICE, MILEAGE, MODEL, COLOR, ALL_COMPONENTS, ANY_COMPONENTS, NONE_COMPONENTS
+    }
+
+    CarQuery(CarService carService, CarStore cars, CarIndex carIndex, CarBitmapIndex bitmapIndex) {
+        this.carService = carService;
+        this.cars = cars;
+        this.carIndex = carIndex;
+        this.bitmapIndex = bitmapIndex;
+    }
+
+    // both ends inclusive
+    public CarQuery priceBetween(BigDecimal priceFrom, BigDecimal priceTo) {
+
+        if (priceFrom == null || priceTo == null || priceFrom.compareTo(priceTo) > 0) {
+            throw new MyException(ExceptionCode.OTHER, "Price range is not valid");
+        }
+
+        this.priceFrom = this.priceFrom == null ? priceFrom : this.priceFrom.max(priceFrom);
+        this.priceTo = this.priceTo == null ? priceTo : this.priceTo.min(priceTo);
+        return this;
+    }
+
+    public CarQuery mileageAtLeast(int mileageFrom) {
+        this.mileageFrom = this.mileageFrom == null ? mileageFrom : Math.max(this.mileageFrom, mileageFrom);
+        return this;
+    }
+
+    public CarQuery model(String model) {
+
+        if (model == null) {
+            throw new MyException(ExceptionCode.OTHER, "Model is null");
+        }
+
+        this.model = model;
+        return this;
+    }
+
+    public CarQuery color(Color color) {
+
+        if (color == null) {
+            throw new MyException(ExceptionCode.OTHER, "Color is null");
+        }
+
+        this.color = color;
+        return this;
+    }
+
+    public CarQuery withAllComponents(Collection<String> components) {
+
+        if (components == null) {
+            throw new MyException(ExceptionCode.OTHER, "Components are null");
+        }
+
+        if (allComponents == null) {
+            allComponents = new HashSet<>();
+        }
+        allComponents.addAll(components);
+        return this;
+    }
+
+    // like every other step it narrows the result, e.g. withAnyComponents(A, B).withAnyComponents(C, D) means (A or B) and (C or D)
+    public CarQuery withAnyComponents(Collection<String> components) {
+
+        if (components == null) {
+            throw new MyException(ExceptionCode.OTHER, "Components are null");
+        }
+
+        if (anyComponents == null) {
+            anyComponents = new ArrayList<>();
+        }
+        anyComponents.add(new HashSet<>(components));
+        return this;
+    }
+
+    // cars without any of given components
+    public CarQuery withoutComponents(Collection<String> components) {
+
+        if (components == null) {
+            throw new MyException(ExceptionCode.OTHER, "Components are null");
+        }
+
+        if (noneComponents == null) {
+            noneComponents = new HashSet<>();
+        }
+        noneComponents.addAll(components);
+        return this;
+    }
+
+    // any other condition, checked last because it needs a car object
+    public CarQuery filter(Predicate<Car> predicate) {
+
+        if (predicate == null) {
+            throw new MyException(ExceptionCode.OTHER, "Predicate is null");
+        }
+
+        this.predicate = this.predicate == null ? predicate : this.predicate.and(predicate);
+        return this;
+    }
+
+    // equal cars stay in the order they were added
+    public CarQuery sortBy(SortType sortType, boolean descending) {
+
+        if (sortType == null) {
+            throw new MyException(ExceptionCode.OTHER, "Sort type is null");
+        }
+
+        this.sortType = sortType;
+        this.descending = descending;
+        return this;
+    }
+
+    public CarQuery limit(int limit) {
+
+        if (limit < 0) {
+            throw new MyException(ExceptionCode.OTHER, "Limit can not be negative");
+        }
+
+        this.limit = limit;
+        return this;
+    }
+
+    public List<Car> list() {
+        return select(Function.identity());
+    }
+
+    // projection of every found car, e.g. select(Car::getModel)
+    public <R> List<R> select(Function<Car, R> projection) {
+
+        int[] ordinals = run();
+        List<R> result = new ArrayList<>(ordinals.length);
+        for (int ordinal : ordinals) {
+            result.add(projection.apply(cars.get(ordinal)));
+        }
+        return result;
+    }
+
+    public int count() {
+
+        if (matchesNothing()) {
+            return 0;
+        }
+
+        // only color and component filters - cardinality of bitmaps, no ordinals are listed
+        if (usesBitmaps() && priceFrom == null && mileageFrom == null && model == null && predicate == null) {
+            CarServiceMetrics metrics = carService.getMetrics();
+            long start = metrics.start();
+            try {
+                return Math.min(matchBitmaps().cardinality(), limit);
+            } finally {
+                metrics.stop(CarOperation.QUERY, start);
+            }
+        }
+
+        return run().length;
+    }
+
+    private int[] run() {
+
+        CarServiceMetrics metrics = carService.getMetrics();
+        long start = metrics.start();
+        try {
+            if (matchesNothing()) {
+                return new int[0];
+            }
+
+            Set<IndexedFilter> answered = EnumSet.noneOf(IndexedFilter.class);
+            BitSet matching = null;
+            if (usesBitmaps()) {
+                matching = matchBitmaps();
+                answered.addAll(EnumSet.of(IndexedFilter.COLOR, IndexedFilter.ALL_COMPONENTS, IndexedFilter.ANY_COMPONENTS, IndexedFilter.NONE_COMPONENTS));
+            }
+            int[] candidates = carIndex.hasIndexes() ? pushDown(answered) : null;
+            IntPredicate residual = residual(answered);
+
+            // bitmap is walked bit by bit, so a pass which stops at limit does not list all of its cars
+            PrimitiveIterator.OfInt ordinals;
+            if (candidates != null) {
+                BitSet bitmap = matching;
+                ordinals = bitmap == null ? Arrays.stream(candidates).iterator() : Arrays.stream(candidates).filter(bitmap::get).iterator();
+            } else {
+                ordinals = matching != null ? matching.stream().iterator() : IntStream.range(0, cars.size()).iterator();
+            }
+
+            if (sortType == null) {
+                IntArrayList found = new IntArrayList();
+                while (ordinals.hasNext() && found.size() < limit) {
+                    int ordinal = ordinals.nextInt();
+                    if (residual.test(ordinal)) {
+                        found.add(ordinal);
+                    }
+                }
+                return found.toArray();
+            }
+
+            Comparator<Integer> order = carService.ordinalComparator(sortType, descending);
+            PriorityQueue<Integer> worstOnTop = new PriorityQueue<>(16, order.reversed());
+            while (ordinals.hasNext()) {
+                int ordinal = ordinals.nextInt();
+                if (!residual.test(ordinal)) {
+                    continue;
+                }
+                if (worstOnTop.size() < limit) {
+                    worstOnTop.add(ordinal);
+                } else if (order.compare(ordinal, worstOnTop.peek()) < 0) {
+                    worstOnTop.poll();
+                    worstOnTop.add(ordinal);
+                }
+            }
+
+            int[] found = new int[worstOnTop.size()];
+            for (int i = found.length - 1; i >= 0; i--) {
+                found[i] = worstOnTop.poll();
+            }
+            return found;
+
+        } finally {
+            metrics.stop(CarOperation.QUERY, start);
+        }
+    }
+
+    // e.g. priceBetween(100, 200).priceBetween(250, 400) leaves an empty price range
+    private boolean matchesNothing() {
+        return limit == 0 || (priceFrom != null && priceFrom.compareTo(priceTo) > 0);
+    }
+
+    private boolean usesBitmaps() {
+        return bitmapIndex != null && (color != null || allComponents != null || anyComponents != null || noneComponents != null);
+    }
+
+    private BitSet matchBitmaps() {
+        return bitmapIndex.match(color, allComponents, anyComponents, noneComponents);
+    }
+
+    // sorted ordinals matching every filter answered by the index, null when no filter was answered by it - without
+    // sorting, filters matching more than 1 / UNSELECTIVE_SHARE of cars are left to the pass, so that a pass which stops
+    // at limit does not list, sort and intersect most of the store first
+    private int[] pushDown(Set<IndexedFilter> answered) {
+
+        boolean listAll = sortType != null;
+        int max = cars.size() / UNSELECTIVE_SHARE;
+        List<int[]> postings = new ArrayList<>();
+
+        if (priceFrom != null && (listAll || carIndex.countPriceBetween(priceFrom, priceTo, max) <= max)) {
+            postings.add(carIndex.withPriceBetween(priceFrom, priceTo));
+            answered.add(IndexedFilter.PRICE);
+        }
+        if (mileageFrom != null && (listAll || carIndex.countMileageAtLeast(mileageFrom, max) <= max)) {
+            postings.add(carIndex.withMileageAtLeast(mileageFrom));
+            answered.add(IndexedFilter.MILEAGE);
+        }
+        if (model != null && (listAll || carIndex.countModel(model) <= max)) {
+            postings.add(carIndex.withModel(model));
+            answered.add(IndexedFilter.MODEL);
+        }
+        if (color != null && !answered.contains(IndexedFilter.COLOR) && (listAll || carIndex.countColor(color) <= max)) {
+            postings.add(carIndex.withColor(color));
+            answered.add(IndexedFilter.COLOR);
+        }
+        if (allComponents != null && !answered.contains(IndexedFilter.ALL_COMPONENTS) && (listAll || carIndex.countAllComponents(allComponents) <= max)) {
+            postings.add(carIndex.withAllComponents(allComponents));
+            answered.add(IndexedFilter.ALL_COMPONENTS);
+        }
+        // groups are answered together, so that the pass checks either all of them or none
+        if (anyComponents != null && !answered.contains(IndexedFilter.ANY_COMPONENTS)
+                && (listAll || anyComponents.stream().allMatch(group -> carIndex.countAnyComponents(group, max) <= max))) {
+            anyComponents.forEach(group -> postings.add(carIndex.withAnyComponents(group)));
+            answered.add(IndexedFilter.ANY_COMPONENTS);
+        }
+
+        if (postings.isEmpty()) {
+            return null;
+        }
+
+        postings.sort(Comparator.comparingInt(posting -> posting.length));
+        int[] result = postings.get(0);
+        for (int p = 1; p < postings.size() && result.length > 0; p++) {
+            result = intersect(result, postings.get(p));
+        }
+        return result;
+    }
+
+    // filters which were not answered by indexes or bitmaps, column filters first so cars are created as late as possible
+    private IntPredicate residual(Set<IndexedFilter> answered) {
+
+        IntPredicate residual = ordinal -> true;
+
+        // e.g. fixed-point store compares minor units with bounds converted once
+        if (priceFrom != null && !answered.contains(IndexedFilter.PRICE)) {
+            residual = residual.and(cars.priceBetween(priceFrom, priceTo));
+        }
+        if (mileageFrom != null && !answered.contains(IndexedFilter.MILEAGE)) {
+            residual = residual.and(ordinal -> cars.getMileage(ordinal) >= mileageFrom);
+        }
+        if (model != null && !answered.contains(IndexedFilter.MODEL)) {
+            residual = residual.and(ordinal -> model.equals(cars.getModel(ordinal)));
+        }
+        if (color != null && !answered.contains(IndexedFilter.COLOR)) {
+            residual = residual.and(ordinal -> color == cars.getColor(ordinal));
+        }
+        if (allComponents != null && !answered.contains(IndexedFilter.ALL_COMPONENTS)) {
+            residual = residual.and(ordinal -> {
+                List<String> components = cars.getComponents(ordinal);
+                return components == null ? allComponents.isEmpty() : components.containsAll(allComponents);
+            });
+        }
+        if (anyComponents != null && !answered.contains(IndexedFilter.ANY_COMPONENTS)) {
+            residual = residual.and(ordinal -> {
+                List<String> components = cars.getComponents(ordinal);
+                return components != null && anyComponents.stream().noneMatch(group -> Collections.disjoint(components, group));
+            });
+        }
+        if (noneComponents != null && !answered.contains(IndexedFilter.NONE_COMPONENTS)) {
+            residual = residual.and(ordinal -> {
+                List<String> components = cars.getComponents(ordinal);
+                return components == null || Collections.disjoint(components, noneComponents);
+            });
+        }
+
+        if (predicate != null) {
+            residual = residual.and(ordinal -> predicate.test(cars.get(ordinal)));
+        }
+
+        return residual;
+    }
+
+    private static int[] intersect(int[] first, int[] second) {
+
+        int[] result = new int[Math.min(first.length, second.length)];
+        int size = 0;
+        for (int i = 0, j = 0; i < first.length && j < second.length; ) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                result[size++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+}
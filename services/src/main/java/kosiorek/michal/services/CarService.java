@@ -1,182 +1,784 @@
 package kosiorek.michal.services;
 
 import kosiorek.michal.converters.CarsJsonConverter;
+import kosiorek.michal.converters.CarsNdjsonConverter;
+import kosiorek.michal.converters.CarsSnapshotConverter;
 import kosiorek.michal.exceptions.ExceptionCode;
 import kosiorek.michal.exceptions.MyException;
 import kosiorek.michal.model.Car;
 import kosiorek.michal.model.enums.Color;
 import kosiorek.michal.model.enums.SortType;
-import kosiorek.michal.validators.CarValidator;
-import org.eclipse.collections.impl.collector.BigDecimalSummaryStatistics;
-import org.eclipse.collections.impl.collector.Collectors2;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 public class CarService {
 
-    private final List<Car> cars;
+    private final CarStore cars;
+    private final CarIndex carIndex;
+    private final IngestionResult ingestionResult;
+    private CarAggregates carAggregates;
+    private CarBitmapIndex bitmapIndex;
+    private boolean readOnly;
+    // increased with every added car, e.g. to invalidate cached query results - volatile, so readers on other threads
+    // see it, the service itself still expects one writer at a time
+    private volatile long version;
+    // replaced by setMetrics while other threads may be querying the service
+    private volatile CarServiceMetrics metrics = CarServiceMetrics.global();
+    private ForkJoinPool forkJoinPool;
+    private boolean ownsForkJoinPool;
+    private int parallelThreshold;
 
     public CarService(String jsonFilename) {
-        cars = getCarsFromJson(jsonFilename);
+        this(jsonFilename, CarIngestionPipeline.sequential());
     }
 
-    private List<Car> getCarsFromJson(String jsonFilename) {
+    public CarService(String jsonFilename, CarIngestionPipeline ingestionPipeline) {
+        this(jsonFilename, ingestionPipeline, new ListCarStore());
+    }
+
+    // carStore has to be empty, e.g. ColumnarCarStore to keep cars in primitive columns instead of objects
+    public CarService(String jsonFilename, CarIngestionPipeline ingestionPipeline, CarStore carStore) {
+        this(jsonFilename, ingestionPipeline, carStore, true);
+    }
 
-        CarValidator carValidator = new CarValidator();
-        AtomicInteger counter = new AtomicInteger(1);
+    // without indexes every query scans the store, e.g. MappedCarStore which does not fit on heap together with indexes
+    public CarService(String jsonFilename, CarIngestionPipeline ingestionPipeline, CarStore carStore, boolean indexed) {
+        this(carStore, indexed, CarOperation.LOAD_JSON, (metrics, sink) -> {
+            try (Stream<Car> carsStream = metrics.timeParsing(new CarsJsonConverter(jsonFilename).streamFromJson())) {
+                return ingestionPipeline.ingest(carsStream, sink);
+            }
+        });
+    }
 
-        return new CarsJsonConverter(jsonFilename)
-                .fromJson()
-                .orElseThrow(() -> new MyException(ExceptionCode.OTHER, "Car service json file parse"))
-                .stream()
-                .filter(car -> {
+    // cars from ingestion are validated and stored, invalid ones are described by ingestion result validation report
+    private CarService(CarStore carStore, boolean indexed, CarOperation loadOperation, BiFunction<CarServiceMetrics, Consumer<Car>, IngestionResult> ingestion) {
 
-                    Map<String, String> errors = carValidator.validate(car);
+        if (carStore == null || carStore.size() != 0) {
+            throw new MyException(ExceptionCode.OTHER, "Car store has to be empty");
+        }
 
-                    if (carValidator.hasErrors()) {
-                        System.out.println("---------------------------------- VALIDATION ERROR -----------------------");
-                        System.out.println("CAR NO. " + counter.get());
-                        errors.forEach((k, v) -> System.out.println(k + " " + v));
-                    }
+        cars = carStore;
+        carIndex = indexed ? new TreeCarIndex(carStore) : new ScanCarIndex(carStore);
+        long start = metrics.start();
+        ingestionResult = ingestion.apply(metrics, this::store);
+        metrics.stop(loadOperation, start);
+        metrics.recordIngestion(ingestionResult);
+    }
+
+    public CarService(List<Car> cars) {
+        this(cars, new ListCarStore());
+    }
+
+    // cars are not validated again - they come from already validated source, e.g. another car service
+    public CarService(List<Car> cars, CarStore carStore) {
+
+        if (cars == null) {
+            throw new MyException(ExceptionCode.OTHER, "Cars are null");
+        }
+
+        if (carStore == null || carStore.size() != 0) {
+            throw new MyException(ExceptionCode.OTHER, "Car store has to be empty");
+        }
+
+        long start = System.nanoTime();
+        this.cars = carStore;
+        carIndex = new TreeCarIndex(carStore);
+        // stored directly - one ingestion is recorded for the whole list instead of ADD_CAR per car
+        for (Car car : cars) {
+            if (car == null) {
+                throw new MyException(ExceptionCode.OTHER, "Car is null");
+            }
+            store(car);
+        }
+        ingestionResult = new IngestionResult(cars.size(), ValidationReport.empty(), cars.size(), System.nanoTime() - start);
+        metrics.recordIngestion(ingestionResult);
+    }
+
+    // serves cars already kept in carStore, e.g. MappedCarStore reopened after restart - cars are not validated again
+    public CarService(CarStore carStore, boolean indexed) {
+
+        if (carStore == null) {
+            throw new MyException(ExceptionCode.OTHER, "Car store is null");
+        }
+
+        long start = System.nanoTime();
+        cars = carStore;
+        carIndex = indexed ? new TreeCarIndex(carStore) : new ScanCarIndex(carStore);
+        for (int i = 0; indexed && i < carStore.size(); i++) {
+            carIndex.add(carStore.get(i), i);
+        }
+        ingestionResult = new IngestionResult(carStore.size(), ValidationReport.empty(), carStore.size(), System.nanoTime() - start);
+    }
+
+    // read only service over a store and an index built elsewhere, e.g. snapshots of concurrent car service
+    // sharing them - nothing is copied or indexed here
+    CarService(CarStore carStore, CarIndex carIndex) {
+        cars = carStore;
+        this.carIndex = carIndex;
+        ingestionResult = new IngestionResult(carStore.size(), ValidationReport.empty(), carStore.size(), 0);
+        readOnly = true;
+    }
+
+    // ndjson file is split into byte ranges on line boundaries, with parallel pipeline every range is parsed
+    // and validated on its own thread
+    public static CarService fromNdjson(String ndjsonFilename, CarIngestionPipeline ingestionPipeline) {
+        return fromNdjson(ndjsonFilename, ingestionPipeline, new ListCarStore(), true);
+    }
+
+    public static CarService fromNdjson(String ndjsonFilename, CarIngestionPipeline ingestionPipeline, CarStore carStore, boolean indexed) {
+        return new CarService(carStore, indexed, CarOperation.LOAD_NDJSON, (metrics, sink) -> {
+            CarsNdjsonConverter converter = new CarsNdjsonConverter(ndjsonFilename);
+            long[] boundaries = converter.split(CarsNdjsonConverter.DEFAULT_RANGE_SIZE);
+
+            List<Supplier<Stream<Car>>> ranges = new ArrayList<>();
+            for (int i = 0; i < boundaries.length - 1; i++) {
+                long from = boundaries[i];
+                long to = boundaries[i + 1];
+                ranges.add(() -> metrics.timeParsing(converter.streamRange(from, to)));
+            }
+            return ingestionPipeline.ingest(ranges, sink);
+        });
+    }
+
+    // json shards (also gzipped) and .ndjson shards are parsed and validated concurrently by the pipeline workers and
+    // merged in the given order, a shard which fails to load is reported in ingestion result shard results and
+    // adds no cars - the other shards are loaded anyway
+    public static CarService fromFiles(List<String> filenames, CarIngestionPipeline ingestionPipeline) {
+        return fromFiles(filenames, ingestionPipeline, new ListCarStore(), true);
+    }
+
+    public static CarService fromFiles(List<String> filenames, CarIngestionPipeline ingestionPipeline, CarStore carStore, boolean indexed) {
+
+        if (filenames == null || filenames.stream().anyMatch(Objects::isNull)) {
+            throw new MyException(ExceptionCode.OTHER, "File names are not valid");
+        }
+
+        return new CarService(carStore, indexed, CarOperation.LOAD_FILES, (metrics, sink) -> {
+            Map<String, Supplier<Stream<Car>>> shards = new LinkedHashMap<>();
+            for (String filename : filenames) {
+                shards.put(filename, () -> metrics.timeParsing(filename.endsWith(".ndjson")
+                        ? new CarsNdjsonConverter(filename).streamFromNdjson()
+                        : new CarsJsonConverter(filename).streamFromJson()));
+            }
+            return ingestionPipeline.ingestShards(shards, sink);
+        });
+    }
+
+    // files from directory matching glob (e.g. "testcars*.json") are loaded with fromFiles in file name order
+    public static CarService fromDirectory(String directory, String glob, CarIngestionPipeline ingestionPipeline) {
+
+        if (directory == null || glob == null) {
+            throw new MyException(ExceptionCode.OTHER, "Directory and glob are required");
+        }
+
+        List<String> filenames = new ArrayList<>();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(Paths.get(directory), glob)) {
+            paths.forEach(path -> {
+                if (Files.isRegularFile(path)) {
+                    filenames.add(path.toString());
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            throw new MyException(ExceptionCode.OTHER, "Can not list files of directory " + directory + ": " + e.getMessage());
+        }
+        Collections.sort(filenames);
+
+        return fromFiles(filenames, ingestionPipeline);
+    }
+
+    public void exportToNdjson(String ndjsonFilename) {
+
+        long start = metrics.start();
+        try {
+            new CarsNdjsonConverter(ndjsonFilename).toNdjson(cars.stream());
+        } finally {
+            metrics.stop(CarOperation.EXPORT_NDJSON, start);
+        }
+    }
 
-                    counter.incrementAndGet();
+    // restores cars saved with saveSnapshot, cars are not validated again
+    public static CarService fromSnapshot(String snapshotFilename) {
+        return fromSnapshot(snapshotFilename, new ListCarStore());
+    }
+
+    public static CarService fromSnapshot(String snapshotFilename, CarStore carStore) {
+
+        CarServiceMetrics metrics = CarServiceMetrics.global();
+        long start = metrics.start();
+        try {
+            return new CarService(new CarsSnapshotConverter(snapshotFilename).fromSnapshot(), carStore);
+        } finally {
+            metrics.stop(CarOperation.LOAD_SNAPSHOT, start);
+        }
+    }
+
+    public void saveSnapshot(String snapshotFilename) {
+
+        long start = metrics.start();
+        try {
+            new CarsSnapshotConverter(snapshotFilename).toSnapshot(cars.stream().collect(Collectors.toList()));
+        } finally {
+            metrics.stop(CarOperation.SAVE_SNAPSHOT, start);
+        }
+    }
+
+    // streams cars to json file without building a list, file written with gzip can be loaded again by the constructor
+    public void exportToJson(String jsonFilename, boolean prettyPrinting, boolean gzip) {
+
+        long start = metrics.start();
+        try {
+            new CarsJsonConverter(jsonFilename).toJson(cars.stream(), prettyPrinting, gzip);
+        } finally {
+            metrics.stop(CarOperation.EXPORT_JSON, start);
+        }
+    }
+
+    public IngestionResult getIngestionResult() {
+        return ingestionResult;
+    }
 
-                    return !carValidator.hasErrors();
+    public CarServiceMetrics getMetrics() {
+        return metrics;
+    }
+
+    // e.g. separate metrics per service, loading is always measured with the global ones
+    public void setMetrics(CarServiceMetrics metrics) {
 
-                })
-                .collect(Collectors.toList());
+        if (metrics == null) {
+            throw new MyException(ExceptionCode.OTHER, "Metrics are null");
+        }
 
+        checkWritable();
+        this.metrics = metrics;
     }
 
     public void addCar(Car car) {
 
-        if (car == null) {
-            throw new MyException(ExceptionCode.OTHER, "Car is null");
+        long start = metrics.start();
+        try {
+            checkWritable();
+
+            if (car == null) {
+                throw new MyException(ExceptionCode.OTHER, "Car is null");
+            }
+
+            store(car);
+        } finally {
+            metrics.stop(CarOperation.ADD_CAR, start);
         }
+    }
 
-        this.cars.add(car);
+    // the store may reject a car (e.g. columnar store and a price which does not fit), so it is added there first
+    private void store(Car car) {
+        int ordinal = cars.size();
+        cars.add(car);
+        carIndex.add(car, ordinal);
+        if (carAggregates != null) {
+            carAggregates.add(car, ordinal);
+        }
+        if (bitmapIndex != null) {
+            bitmapIndex.add(car, ordinal);
+        }
+        version++;
+    }
+
+    // read only services (e.g. published snapshots) reject every change, also enabling aggregates, bitmaps or parallel mode
+    private void checkWritable() {
+        if (readOnly) {
+            throw new MyException(ExceptionCode.OTHER, "Car service is read only");
+        }
+    }
+
+    // from now on color counts, most expensive cars and statistics are updated with every added car
+    public void enableMaterializedAggregates() {
+
+        checkWritable();
+
+        if (carAggregates != null) {
+            return;
+        }
+
+        CarAggregates aggregates = new CarAggregates();
+        for (int i = 0; i < cars.size(); i++) {
+            aggregates.add(cars.get(i), i);
+        }
+        carAggregates = aggregates;
+    }
+
+    public boolean hasMaterializedAggregates() {
+        return carAggregates != null;
+    }
+
+    // from now on color and component filters of queries and color counts with components are answered by bitmaps
+    public void enableBitmapIndexes() {
+
+        checkWritable();
+
+        if (bitmapIndex != null) {
+            return;
+        }
+
+        CarBitmapIndex index = new CarBitmapIndex();
+        for (int i = 0; i < cars.size(); i++) {
+            index.add(cars.get(i), i);
+        }
+        bitmapIndex = index;
+    }
+
+    public boolean hasBitmapIndexes() {
+        return bitmapIndex != null;
+    }
+
+    // analytics (statistics, groupings, the most expensive cars, components map) of at least threshold cars run
+    // on a dedicated fork join pool with given parallelism, smaller services stay sequential
+    public void enableParallelMode(int parallelism, int threshold) {
+
+        if (parallelism < 1) {
+            throw new MyException(ExceptionCode.OTHER, "Parallelism must be positive");
+        }
+
+        checkWritable();
+
+        // checked before the pool is created, otherwise its threads would never be shut down
+        if (threshold < 0) {
+            throw new MyException(ExceptionCode.OTHER, "Parallel threshold can not be negative");
+        }
+
+        enableParallelMode(new ForkJoinPool(parallelism), threshold);
+        ownsForkJoinPool = true;
+    }
+
+    // pool is not shut down by disableParallelMode, e.g. pool shared by many services
+    public void enableParallelMode(ForkJoinPool forkJoinPool, int threshold) {
+
+        if (forkJoinPool == null) {
+            throw new MyException(ExceptionCode.OTHER, "Fork join pool is null");
+        }
+
+        checkWritable();
+
+        if (threshold < 0) {
+            throw new MyException(ExceptionCode.OTHER, "Parallel threshold can not be negative");
+        }
+
+        disableParallelMode();
+        this.forkJoinPool = forkJoinPool;
+        this.parallelThreshold = threshold;
+    }
+
+    public void disableParallelMode() {
+
+        if (ownsForkJoinPool) {
+            forkJoinPool.shutdown();
+        }
+
+        forkJoinPool = null;
+        ownsForkJoinPool = false;
+    }
+
+    public boolean isParallelModeEnabled() {
+        return forkJoinPool != null;
+    }
+
+    private boolean runsInParallel() {
+        return forkJoinPool != null && cars.size() >= parallelThreshold;
+    }
+
+    // parallel streams started inside of the task use the pool of the task instead of the common one
+    private <T> T inForkJoinPool(Callable<T> task) {
+        return forkJoinPool.submit(task).join();
+    }
+
+    public int size() {
+        return cars.size();
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    Stream<Car> stream() {
+        return cars.stream();
+    }
+
+    // filters, sorting and limit are evaluated together in one pass when the query is run
+    public CarQuery query() {
+        return new CarQuery(this, cars, carIndex, bitmapIndex);
     }
 
     public List<Car> sort(SortType sortType, boolean descending) {
 
-        Stream<Car> carsStream = this.cars.stream();
+        long start = metrics.start();
+        try {
+            return sortAll(sortType, descending);
+        } finally {
+            metrics.stop(CarOperation.SORT, start);
+        }
+    }
+
+    // sorts ordinals so prices are compared by the store (fixed-point stores compare longs) and cars are created once
+    private List<Car> sortAll(SortType sortType, boolean descending) {
+
+        int[] ordinals = IntStream.range(0, cars.size())
+                .boxed()
+                .sorted(ordinalComparator(sortType, descending))
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+        return toCars(ordinals);
+    }
+
+    // first limit cars of sort(sortType, descending) found with a bounded heap - O(n log limit) instead of full sort
+    public List<Car> sort(SortType sortType, boolean descending, int limit) {
+
+        long start = metrics.start();
+        try {
+            if (limit < 0) {
+                throw new MyException(ExceptionCode.OTHER, "Limit can not be negative");
+            }
+
+            if (limit >= cars.size()) {
+                return sortAll(sortType, descending);
+            }
+
+            // equal cars are ordered by ordinal, same as in stable sort
+            Comparator<Integer> order = ordinalComparator(sortType, descending);
+            PriorityQueue<Integer> worstOnTop = new PriorityQueue<>(Math.max(1, limit), order.reversed());
+
+            for (int ordinal = 0; ordinal < cars.size() && limit > 0; ordinal++) {
+                if (worstOnTop.size() < limit) {
+                    worstOnTop.add(ordinal);
+                } else if (order.compare(ordinal, worstOnTop.peek()) < 0) {
+                    worstOnTop.poll();
+                    worstOnTop.add(ordinal);
+                }
+            }
+
+            int[] ordinals = new int[worstOnTop.size()];
+            for (int i = ordinals.length - 1; i >= 0; i--) {
+                ordinals[i] = worstOnTop.poll();
+            }
+
+            return toCars(ordinals);
+        } finally {
+            metrics.stop(CarOperation.SORT, start);
+        }
+    }
+
+    public List<Car> getTopCars(SortType sortType, int k) {
+        return sort(sortType, true, k);
+    }
+
+    public List<Car> getBottomCars(SortType sortType, int k) {
+        return sort(sortType, false, k);
+    }
+
+    // compares cars by ordinal without materializing them from the store
+    Comparator<Integer> ordinalComparator(SortType sortType, boolean descending) {
+
+        Comparator<Integer> comparator;
 
         switch (sortType) {
             case MODEL:
-                carsStream = this.cars.stream().sorted(Comparator.comparing(Car::getModel));
+                comparator = Comparator.comparing(cars::getModel);
                 break;
             case PRICE:
-                carsStream = this.cars.stream().sorted(Comparator.comparing(Car::getPrice));
+                comparator = cars::comparePrices;
                 break;
             case MILEAGE:
-                carsStream = this.cars.stream().sorted(Comparator.comparing(Car::getMileage));
+                comparator = Comparator.comparingInt(cars::getMileage);
                 break;
             case COLOR:
-                carsStream = this.cars.stream().sorted(Comparator.comparing(Car::getColor));
+                comparator = Comparator.comparing(cars::getColor);
                 break;
+            default:
+                throw new MyException(ExceptionCode.OTHER, "Sort type is not supported: " + sortType);
         }
 
-        List<Car> sortedCars = carsStream.collect(Collectors.toList());
-
-        if (descending) {
-            Collections.reverse(sortedCars);
-        }
-
-        return sortedCars;
+        return (descending ? comparator.reversed() : comparator).thenComparingInt(ordinal -> ordinal);
     }
 
 
     public List<Car> deleteCarsWithMileageLowerThan(double x) {
 
-        return this.cars.stream().
-                filter(c -> c.getMileage() >= x)
-                .collect(Collectors.toList());
-
+        long start = metrics.start();
+        try {
+            // no mileage is at least NaN
+            if (Double.isNaN(x) || x > Integer.MAX_VALUE) {
+                return new ArrayList<>();
+            }
+
+            int mileageFrom = x < Integer.MIN_VALUE ? Integer.MIN_VALUE : (int) Math.ceil(x);
+            return toCars(carIndex.withMileageAtLeast(mileageFrom));
+        } finally {
+            metrics.stop(CarOperation.DELETE_CARS_WITH_MILEAGE_LOWER_THAN, start);
+        }
     }
 
     public Map<Color, Long> groupByColorAndCount() {
 
-        return this.cars
-                .stream().collect(Collectors.groupingBy(Car::getColor, Collectors.counting()))
-                .entrySet().stream()
-                .sorted((e1, e2) -> Long.compare(e2.getValue(), e1.getValue()))
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, Long::max, LinkedHashMap::new));
+        long start = metrics.start();
+        try {
+            if (carAggregates != null) {
+                return new LinkedHashMap<>(carAggregates.getColorCounts());
+            }
+
+            Map<Color, Long> colorCounts;
+            if (runsInParallel() && !carIndex.hasIndexes()) {
+                long[] counts = inForkJoinPool(() -> ParallelCarAnalytics.colorCounts(cars, true));
+                colorCounts = new EnumMap<>(Color.class);
+                for (Color color : Color.values()) {
+                    if (counts[color.ordinal()] > 0) {
+                        colorCounts.put(color, counts[color.ordinal()]);
+                    }
+                }
+            } else {
+                colorCounts = carIndex.countByColor();
+            }
+
+            return colorCounts
+                    .entrySet().stream()
+                    .sorted((e1, e2) -> Long.compare(e2.getValue(), e1.getValue()))
+                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, Long::max, LinkedHashMap::new));
+        } finally {
+            metrics.stop(CarOperation.GROUP_BY_COLOR_AND_COUNT, start);
+        }
+    }
+
+    // the same as groupByColorAndCount but only cars which have all given components are counted
+    public Map<Color, Long> groupByColorAndCount(Collection<String> components) {
+
+        long start = metrics.start();
+        try {
+            if (components == null) {
+                throw new MyException(ExceptionCode.OTHER, "Components are null");
+            }
+
+            long[] counts;
+            if (bitmapIndex != null) {
+                counts = bitmapIndex.colorCounts(bitmapIndex.matchWords(null, components, null, null));
+            } else {
+                counts = new long[Color.values().length];
+                for (int ordinal : carIndex.withAllComponents(components)) {
+                    Color color = cars.getColor(ordinal);
+                    if (color != null) {
+                        counts[color.ordinal()]++;
+                    }
+                }
+            }
+
+            Map<Color, Long> colorCounts = new LinkedHashMap<>();
+            Arrays.stream(Color.values())
+                    .filter(color -> counts[color.ordinal()] > 0)
+                    .sorted((c1, c2) -> Long.compare(counts[c2.ordinal()], counts[c1.ordinal()]))
+                    .forEach(color -> colorCounts.put(color, counts[color.ordinal()]));
+            return colorCounts;
+        } finally {
+            metrics.stop(CarOperation.GROUP_BY_COLOR_AND_COUNT, start);
+        }
     }
 
     public Map<String, Car> groupByModelAndMostExpensiveCar() {
 
-        return cars
-                .stream()
-                .collect(Collectors.groupingBy(
-                        Car::getModel,
-                        Collectors.collectingAndThen(Collectors.maxBy(Comparator.comparing(Car::getPrice)), maxPriceCar -> maxPriceCar.orElse(null))
-                        )
-                );
-
+        long start = metrics.start();
+        try {
+            if (carAggregates != null) {
+                Map<String, Car> mostExpensiveCars = new HashMap<>();
+                carAggregates.getMostExpensiveByModel().forEach((model, ordinal) -> mostExpensiveCars.put(model, cars.get(ordinal)));
+                return mostExpensiveCars;
+            }
+
+            Map<String, Integer> mostExpensiveByModel = runsInParallel()
+                    ? inForkJoinPool(() -> ParallelCarAnalytics.mostExpensiveByModel(cars, true))
+                    : carIndex.mostExpensiveByModel();
+
+            Map<String, Car> mostExpensiveCars = new HashMap<>();
+            mostExpensiveByModel.forEach((model, ordinal) -> mostExpensiveCars.put(model, cars.get(ordinal)));
+            return mostExpensiveCars;
+        } finally {
+            metrics.stop(CarOperation.GROUP_BY_MODEL_AND_MOST_EXPENSIVE_CAR, start);
+        }
     }
 
     public void statistics() {
+        System.out.println(getStatistics());
+    }
 
-        System.out.println("MILEAGE");
-        DoubleSummaryStatistics dss = cars.stream()
-                .collect(Collectors.summarizingDouble(Car::getMileage));
-        System.out.println("MIN: " + dss.getMin());
-        System.out.println("MAX: " + dss.getMax());
-        System.out.println("AVG: " + dss.getAverage());
+    public CarStatistics getStatistics() {
 
-        BigDecimalSummaryStatistics carPriceSummaryStatistics = cars.stream().collect(Collectors2.summarizingBigDecimal(Car::getPrice));
+        long start = metrics.start();
+        try {
+            if (carAggregates != null) {
+                return carAggregates.getStatistics();
+            }
 
-        System.out.println("PRICE");
-        System.out.println("MIN: " + carPriceSummaryStatistics.getMin());
-        System.out.println("MAX: " + carPriceSummaryStatistics.getMax());
-        System.out.println("AVG: " + carPriceSummaryStatistics.getAverage());
+            return computeStatistics(false, runsInParallel());
+        } finally {
+            metrics.stop(CarOperation.STATISTICS, start);
+        }
     }
 
-    public List<Car> getCarWithTheBiggestPrice() {
+    // all aggregates in one pass over the store, parallel pass merges per thread accumulators
+    public CarStatistics getStatistics(boolean withPercentiles, boolean parallel) {
+
+        long start = metrics.start();
+        try {
+            return computeStatistics(withPercentiles, parallel);
+        } finally {
+            metrics.stop(CarOperation.STATISTICS, start);
+        }
+    }
+
+    private CarStatistics computeStatistics(boolean withPercentiles, boolean parallel) {
+
+        if (parallel && forkJoinPool != null && !ForkJoinTask.inForkJoinPool()) {
+            return inForkJoinPool(() -> computeStatistics(withPercentiles, true));
+        }
+
+        IntStream ordinals = IntStream.range(0, cars.size());
+        if (parallel) {
+            ordinals = ordinals.parallel();
+        }
+
+        return ordinals
+                .collect(
+                        () -> new CarStatisticsAccumulator(withPercentiles),
+                        (accumulator, ordinal) -> accumulator.accept(cars, ordinal),
+                        CarStatisticsAccumulator::merge)
+                .finish();
+    }
 
-        return cars
-                .stream()
-                .collect(Collectors.groupingBy(Car::getPrice))
-                .entrySet().stream()
-                .max(Comparator.comparing(Map.Entry::getKey))
-                .orElseThrow(() -> new MyException(ExceptionCode.OTHER, "No most expensive car"))
-                .getValue();
+    public List<Car> getCarWithTheBiggestPrice() {
 
+        long start = metrics.start();
+        try {
+            if (carAggregates != null) {
+                IntArrayList ordinals = carAggregates.getMaxPriceOrdinals();
+                if (ordinals.isEmpty()) {
+                    throw new MyException(ExceptionCode.OTHER, "No most expensive car");
+                }
+                return toCars(ordinals.toArray());
+            }
+
+            // single pass, prices equal by compareTo (e.g. 120 and 120.00) are treated as the same price
+            int[] ordinals = runsInParallel()
+                    ? inForkJoinPool(() -> ParallelCarAnalytics.maxPriceOrdinals(cars, true))
+                    : ParallelCarAnalytics.maxPriceOrdinals(cars, false);
+
+            if (ordinals.length == 0) {
+                throw new MyException(ExceptionCode.OTHER, "No most expensive car");
+            }
+
+            return toCars(ordinals);
+        } finally {
+            metrics.stop(CarOperation.CAR_WITH_THE_BIGGEST_PRICE, start);
+        }
     }
 
+    // returns sorted copies, cars kept in the service are not modified so they can be safely shared between threads
     public List<Car> getCarsWithSortedComponents() {
-        return cars.stream()
-                .peek(car -> car.setComponents(car.getComponents().stream().sorted().collect(Collectors.toList())))
-                .collect(Collectors.toList());
+
+        long start = metrics.start();
+        try {
+            return cars.stream()
+                    .map(car -> Car.builder()
+                            .model(car.getModel())
+                            .price(car.getPrice())
+                            .color(car.getColor())
+                            .mileage(car.getMileage())
+                            .components(car.getComponents().stream().sorted().collect(Collectors.toList()))
+                            .build())
+                    .collect(Collectors.toList());
+        } finally {
+            metrics.stop(CarOperation.CARS_WITH_SORTED_COMPONENTS, start);
+        }
     }
 
     public Map<String, List<Car>> getMapOfComponentsAndCarsWithThatComponent() {
 
-        return cars.stream()
-                .flatMap(car -> car.getComponents().stream())
-                .collect(Collectors.toSet())
-                .stream().collect(Collectors.toMap(
-                        component -> component,
-                        component -> cars.stream().filter(car -> car.getComponents().contains(component)).collect(Collectors.toList())
-                ));
+        long start = metrics.start();
+        try {
+            Map<String, int[]> ordinalsByComponent = carIndex.withComponents();
+
+            if (runsInParallel()) {
+                return inForkJoinPool(() -> ordinalsByComponent.entrySet().parallelStream()
+                        .collect(Collectors.toConcurrentMap(Map.Entry::getKey, e -> toCars(e.getValue()))));
+            }
+
+            Map<String, List<Car>> carsByComponent = new HashMap<>();
+            ordinalsByComponent.forEach((component, ordinals) -> carsByComponent.put(component, toCars(ordinals)));
+            return carsByComponent;
+        } finally {
+            metrics.stop(CarOperation.MAP_OF_COMPONENTS_AND_CARS, start);
+        }
+    }
+
+    public List<Car> getCarsWithAllComponents(Collection<String> components) {
+
+        long start = metrics.start();
+        try {
+            if (components == null) {
+                throw new MyException(ExceptionCode.OTHER, "Components are null");
+            }
+
+            return toCars(carIndex.withAllComponents(components));
+        } finally {
+            metrics.stop(CarOperation.CARS_WITH_ALL_COMPONENTS, start);
+        }
+    }
+
+    public List<Car> getCarsWithAnyComponents(Collection<String> components) {
+
+        long start = metrics.start();
+        try {
+            if (components == null) {
+                throw new MyException(ExceptionCode.OTHER, "Components are null");
+            }
+
+            return toCars(carIndex.withAnyComponents(components));
+        } finally {
+            metrics.stop(CarOperation.CARS_WITH_ANY_COMPONENTS, start);
+        }
     }
 
 
     public List<Car> getCarsWithPriceBetween(BigDecimal priceFrom, BigDecimal priceTo) {
 
-        if (priceFrom.compareTo(priceTo) >= 0) {
-            throw new MyException(ExceptionCode.OTHER, "Price range is not valid");
+        long start = metrics.start();
+        try {
+            if (priceFrom.compareTo(priceTo) >= 0) {
+                throw new MyException(ExceptionCode.OTHER, "Price range is not valid");
+            }
+
+            return toCars(carIndex.withPriceBetween(priceFrom, priceTo));
+        } finally {
+            metrics.stop(CarOperation.CARS_WITH_PRICE_BETWEEN, start);
         }
+    }
 
-        return cars
-                .stream()
-                .filter(car -> car.getPrice().compareTo(priceFrom) >= 0 && car.getPrice().compareTo(priceTo) <= 0)
-                .collect(Collectors.toList());
+    private List<Car> toCars(int[] ordinals) {
 
+        List<Car> result = new ArrayList<>(ordinals.length);
+        for (int ordinal : ordinals) {
+            result.add(cars.get(ordinal));
+        }
+        return result;
     }
 
     @Override
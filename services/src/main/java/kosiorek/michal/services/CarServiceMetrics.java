@@ -0,0 +1,163 @@
+package kosiorek.michal.services;
+
+import kosiorek.michal.model.Car;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// latency of every car service operation, ingestion throughput, parse time and validation failures by field -
+// disabled metrics cost one volatile read per operation, car services use the global instance unless set otherwise
+public class CarServiceMetrics {
+
+    private static final CarServiceMetrics GLOBAL = new CarServiceMetrics(false);
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+
+    private volatile boolean enabled;
+
+    private final Map<CarOperation, LatencyHistogram> latencies = new EnumMap<>(CarOperation.class);
+    private final LongAdder ingestedCars = new LongAdder();
+    private final LongAdder ingestNanos = new LongAdder();
+    private final LongAdder parseNanos = new LongAdder();
+    private final Map<String, LongAdder> validationFailures = new ConcurrentHashMap<>();
+
+    public CarServiceMetrics(boolean enabled) {
+        this.enabled = enabled;
+        for (CarOperation operation : CarOperation.values()) {
+            latencies.put(operation, new LatencyHistogram());
+        }
+    }
+
+    public static CarServiceMetrics global() {
+        return GLOBAL;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void enable() {
+        enabled = true;
+    }
+
+    public void disable() {
+        enabled = false;
+    }
+
+    public void reset() {
+        latencies.values().forEach(LatencyHistogram::reset);
+        ingestedCars.reset();
+        ingestNanos.reset();
+        parseNanos.reset();
+        validationFailures.clear();
+    }
+
+    // latencies in nanoseconds
+    public LatencyHistogram getLatency(CarOperation operation) {
+        return latencies.get(operation);
+    }
+
+    public long getIngestedCars() {
+        return ingestedCars.sum();
+    }
+
+    public long getIngestNanos() {
+        return ingestNanos.sum();
+    }
+
+    // time spent in converters reading cars, summed over all threads
+    public long getParseNanos() {
+        return parseNanos.sum();
+    }
+
+    public double getIngestedCarsPerSecond() {
+        long nanos = getIngestNanos();
+        return nanos == 0 ? 0 : getIngestedCars() * 1_000_000_000.0 / nanos;
+    }
+
+    // field (validation rule name) -> number of cars which failed it
+    public Map<String, Long> getValidationFailures() {
+        Map<String, Long> failures = new TreeMap<>();
+        validationFailures.forEach((field, count) -> failures.put(field, count.sum()));
+        return failures;
+    }
+
+    public String report() {
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-40s %10s %12s %12s %12s %12s %12s%n", "OPERATION", "COUNT", "MEAN [us]", "P50 [us]", "P90 [us]", "P99 [us]", "MAX [us]"));
+
+        latencies.forEach((operation, latency) -> {
+            if (latency.getCount() > 0) {
+                report.append(String.format("%-40s %10d %12.1f %12.1f %12.1f %12.1f %12.1f%n",
+                        operation, latency.getCount(), latency.getMean() / 1000,
+                        latency.getValueAtPercentile(50) / 1000.0, latency.getValueAtPercentile(90) / 1000.0,
+                        latency.getValueAtPercentile(99) / 1000.0, latency.getMax() / 1000.0));
+            }
+        });
+
+        report.append(String.format("INGESTED CARS: %d, CARS/SEC: %.0f, PARSE TIME [ms]: %d%n",
+                getIngestedCars(), getIngestedCarsPerSecond(), TimeUnit.NANOSECONDS.toMillis(getParseNanos())));
+        report.append("VALIDATION FAILURES: ").append(getValidationFailures());
+
+        return report.toString();
+    }
+
+    @Override
+    public String toString() {
+        return report();
+    }
+
+    long start() {
+        return enabled ? System.nanoTime() : NOT_STARTED;
+    }
+
+    void stop(CarOperation operation, long start) {
+        if (start != NOT_STARTED) {
+            latencies.get(operation).record(System.nanoTime() - start);
+        }
+    }
+
+    void recordIngestion(IngestionResult ingestionResult) {
+
+        if (!enabled) {
+            return;
+        }
+
+        ingestedCars.add(ingestionResult.getProcessedCount());
+        ingestNanos.add(ingestionResult.getElapsedNanos());
+        ingestionResult.getValidationReport().getFailureCounts()
+                .forEach((field, count) -> validationFailures.computeIfAbsent(field, f -> new LongAdder()).add(count));
+    }
+
+    // measures time spent producing cars, without time spent by whoever consumes them
+    Stream<Car> timeParsing(Stream<Car> cars) {
+
+        if (!enabled) {
+            return cars;
+        }
+
+        Spliterator<Car> source = cars.spliterator();
+        Spliterator<Car> timed = new Spliterators.AbstractSpliterator<>(source.estimateSize(), source.characteristics()) {
+            private Car next;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super Car> action) {
+                long start = System.nanoTime();
+                boolean advanced = source.tryAdvance(car -> next = car);
+                parseNanos.add(System.nanoTime() - start);
+                if (advanced) {
+                    action.accept(next);
+                }
+                return advanced;
+            }
+        };
+
+        return StreamSupport.stream(timed, false).onClose(cars::close);
+    }
+
+}
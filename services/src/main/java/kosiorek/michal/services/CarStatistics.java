@@ -0,0 +1,119 @@
+package kosiorek.michal.services;
+
+import kosiorek.michal.model.enums.Color;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Map;
+
+// immutable result of a single statistics pass, breakdowns hold statistics of subsets of cars without further breakdowns
+public class CarStatistics {
+
+    private final long count;
+
+    private final BigDecimal minPrice;
+    private final BigDecimal maxPrice;
+    private final BigDecimal sumPrice;
+    private final BigDecimal averagePrice;
+
+    private final int minMileage;
+    private final int maxMileage;
+    private final long sumMileage;
+    private final double averageMileage;
+
+    private final Map<Integer, BigDecimal> pricePercentiles;
+    private final Map<Integer, Integer> mileagePercentiles;
+
+    private final Map<Color, CarStatistics> byColor;
+    private final Map<String, CarStatistics> byModel;
+
+    CarStatistics(long count,
+                  BigDecimal minPrice, BigDecimal maxPrice, BigDecimal sumPrice, BigDecimal averagePrice,
+                  int minMileage, int maxMileage, long sumMileage, double averageMileage,
+                  Map<Integer, BigDecimal> pricePercentiles, Map<Integer, Integer> mileagePercentiles,
+                  Map<Color, CarStatistics> byColor, Map<String, CarStatistics> byModel) {
+        this.count = count;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.sumPrice = sumPrice;
+        this.averagePrice = averagePrice;
+        this.minMileage = minMileage;
+        this.maxMileage = maxMileage;
+        this.sumMileage = sumMileage;
+        this.averageMileage = averageMileage;
+        this.pricePercentiles = Collections.unmodifiableMap(pricePercentiles);
+        this.mileagePercentiles = Collections.unmodifiableMap(mileagePercentiles);
+        this.byColor = Collections.unmodifiableMap(byColor);
+        this.byModel = Collections.unmodifiableMap(byModel);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    // price values are null when there are no cars with price
+    public BigDecimal getMinPrice() {
+        return minPrice;
+    }
+
+    public BigDecimal getMaxPrice() {
+        return maxPrice;
+    }
+
+    public BigDecimal getSumPrice() {
+        return sumPrice;
+    }
+
+    public BigDecimal getAveragePrice() {
+        return averagePrice;
+    }
+
+    public int getMinMileage() {
+        return minMileage;
+    }
+
+    public int getMaxMileage() {
+        return maxMileage;
+    }
+
+    public long getSumMileage() {
+        return sumMileage;
+    }
+
+    public double getAverageMileage() {
+        return averageMileage;
+    }
+
+    // percentile (e.g. 50, 90, 99) -> value, empty when percentiles were not requested
+    public Map<Integer, BigDecimal> getPricePercentiles() {
+        return pricePercentiles;
+    }
+
+    public Map<Integer, Integer> getMileagePercentiles() {
+        return mileagePercentiles;
+    }
+
+    public Map<Color, CarStatistics> getByColor() {
+        return byColor;
+    }
+
+    public Map<String, CarStatistics> getByModel() {
+        return byModel;
+    }
+
+    @Override
+    public String toString() {
+        return "COUNT: " + count + "\n"
+                + "MILEAGE\n"
+                + "MIN: " + minMileage + "\n"
+                + "MAX: " + maxMileage + "\n"
+                + "AVG: " + averageMileage + "\n"
+                + (mileagePercentiles.isEmpty() ? "" : "PERCENTILES: " + mileagePercentiles + "\n")
+                + "PRICE\n"
+                + "MIN: " + minPrice + "\n"
+                + "MAX: " + maxPrice + "\n"
+                + "AVG: " + averagePrice
+                + (pricePercentiles.isEmpty() ? "" : "\nPERCENTILES: " + pricePercentiles);
+    }
+
+}
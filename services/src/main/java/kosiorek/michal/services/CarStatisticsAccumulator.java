@@ -0,0 +1,167 @@
+package kosiorek.michal.services;
+
+import kosiorek.michal.model.Car;
+import kosiorek.michal.model.enums.Color;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.*;
+
+// mutable partial result of statistics pass, partial results from different threads are combined with merge
+class CarStatisticsAccumulator {
+
+    static final int[] PERCENTILES = {50, 90, 95, 99};
+
+    private final boolean withPercentiles;
+    private final boolean withBreakdowns;
+
+    private long count;
+
+    private long pricedCount;
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+    private BigDecimal sumPrice = BigDecimal.ZERO;
+
+    private int minMileage = Integer.MAX_VALUE;
+    private int maxMileage = Integer.MIN_VALUE;
+    private long sumMileage;
+
+    private final List<BigDecimal> prices;
+    private final IntArrayList mileages;
+
+    private final Map<Color, CarStatisticsAccumulator> byColor;
+    private final Map<String, CarStatisticsAccumulator> byModel;
+
+    CarStatisticsAccumulator(boolean withPercentiles) {
+        this(withPercentiles, true);
+    }
+
+    private CarStatisticsAccumulator(boolean withPercentiles, boolean withBreakdowns) {
+        this.withPercentiles = withPercentiles;
+        this.withBreakdowns = withBreakdowns;
+        this.prices = withPercentiles ? new ArrayList<>() : null;
+        this.mileages = withPercentiles ? new IntArrayList() : null;
+        this.byColor = withBreakdowns ? new EnumMap<>(Color.class) : null;
+        this.byModel = withBreakdowns ? new HashMap<>() : null;
+    }
+
+    void accept(Car car) {
+        accept(car.getModel(), car.getPrice(), car.getColor(), car.getMileage());
+    }
+
+    void accept(CarStore carStore, int ordinal) {
+        accept(carStore.getModel(ordinal), carStore.getPrice(ordinal), carStore.getColor(ordinal), carStore.getMileage(ordinal));
+    }
+
+    void accept(String model, BigDecimal price, Color color, int mileage) {
+
+        count++;
+
+        if (price != null) {
+            pricedCount++;
+            minPrice = minPrice == null || price.compareTo(minPrice) < 0 ? price : minPrice;
+            maxPrice = maxPrice == null || price.compareTo(maxPrice) > 0 ? price : maxPrice;
+            sumPrice = sumPrice.add(price);
+            if (withPercentiles) {
+                prices.add(price);
+            }
+        }
+
+        minMileage = Math.min(minMileage, mileage);
+        maxMileage = Math.max(maxMileage, mileage);
+        sumMileage += mileage;
+        if (withPercentiles) {
+            mileages.add(mileage);
+        }
+
+        if (withBreakdowns) {
+            if (color != null) {
+                byColor.computeIfAbsent(color, c -> new CarStatisticsAccumulator(withPercentiles, false)).accept(model, price, color, mileage);
+            }
+            if (model != null) {
+                byModel.computeIfAbsent(model, m -> new CarStatisticsAccumulator(withPercentiles, false)).accept(model, price, color, mileage);
+            }
+        }
+    }
+
+    CarStatisticsAccumulator merge(CarStatisticsAccumulator other) {
+
+        count += other.count;
+
+        pricedCount += other.pricedCount;
+        if (other.minPrice != null) {
+            minPrice = minPrice == null || other.minPrice.compareTo(minPrice) < 0 ? other.minPrice : minPrice;
+            maxPrice = maxPrice == null || other.maxPrice.compareTo(maxPrice) > 0 ? other.maxPrice : maxPrice;
+        }
+        sumPrice = sumPrice.add(other.sumPrice);
+
+        minMileage = Math.min(minMileage, other.minMileage);
+        maxMileage = Math.max(maxMileage, other.maxMileage);
+        sumMileage += other.sumMileage;
+
+        if (withPercentiles) {
+            prices.addAll(other.prices);
+            for (int i = 0; i < other.mileages.size(); i++) {
+                mileages.add(other.mileages.get(i));
+            }
+        }
+
+        if (withBreakdowns) {
+            other.byColor.forEach((color, accumulator) -> byColor.merge(color, accumulator, CarStatisticsAccumulator::merge));
+            other.byModel.forEach((model, accumulator) -> byModel.merge(model, accumulator, CarStatisticsAccumulator::merge));
+        }
+
+        return this;
+    }
+
+    CarStatistics finish() {
+
+        Map<Integer, BigDecimal> pricePercentiles = new LinkedHashMap<>();
+        Map<Integer, Integer> mileagePercentiles = new LinkedHashMap<>();
+
+        if (withPercentiles && count > 0) {
+            int[] sortedMileages = mileages.toArray();
+            Arrays.sort(sortedMileages);
+            for (int percentile : PERCENTILES) {
+                mileagePercentiles.put(percentile, sortedMileages[rank(percentile, sortedMileages.length)]);
+            }
+        }
+        if (withPercentiles && pricedCount > 0) {
+            BigDecimal[] sortedPrices = prices.toArray(new BigDecimal[0]);
+            Arrays.sort(sortedPrices);
+            for (int percentile : PERCENTILES) {
+                pricePercentiles.put(percentile, sortedPrices[rank(percentile, sortedPrices.length)]);
+            }
+        }
+
+        Map<Color, CarStatistics> colorStatistics = new EnumMap<>(Color.class);
+        Map<String, CarStatistics> modelStatistics = new HashMap<>();
+        if (withBreakdowns) {
+            byColor.forEach((color, accumulator) -> colorStatistics.put(color, accumulator.finish()));
+            byModel.forEach((model, accumulator) -> modelStatistics.put(model, accumulator.finish()));
+        }
+
+        return new CarStatistics(
+                count,
+                minPrice,
+                maxPrice,
+                pricedCount == 0 ? null : sumPrice,
+                pricedCount == 0 ? null : sumPrice.divide(BigDecimal.valueOf(pricedCount), MathContext.DECIMAL128),
+                count == 0 ? 0 : minMileage,
+                count == 0 ? 0 : maxMileage,
+                sumMileage,
+                count == 0 ? 0 : (double) sumMileage / count,
+                pricePercentiles,
+                mileagePercentiles,
+                colorStatistics,
+                modelStatistics
+        );
+    }
+
+    // nearest rank method
+    private static int rank(int percentile, int size) {
+        return Math.max(0, (int) Math.ceil(percentile / 100.0 * size) - 1);
+    }
+
+}
@@ -0,0 +1,86 @@
+package kosiorek.michal.services;
+
+import kosiorek.michal.model.Car;
+import kosiorek.michal.model.enums.Color;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+// append only storage of cars addressed by ordinal - position in which car was added
+public interface CarStore {
+
+    void add(Car car);
+
+    int size();
+
+    Car get(int ordinal);
+
+    String getModel(int ordinal);
+
+    BigDecimal getPrice(int ordinal);
+
+    Color getColor(int ordinal);
+
+    int getMileage(int ordinal);
+
+    List<String> getComponents(int ordinal);
+
+    default Stream<Car> stream() {
+        return IntStream.range(0, size()).mapToObj(this::get);
+    }
+
+    // scans used when there is no index, stores can override them to compare raw values without creating objects
+
+    // ordinals of cars with price in [priceFrom, priceTo], cars without price are skipped
+    default int[] scanPriceBetween(BigDecimal priceFrom, BigDecimal priceTo) {
+        IntPredicate priceBetween = priceBetween(priceFrom, priceTo);
+        IntArrayList ordinals = new IntArrayList();
+        for (int i = 0; i < size(); i++) {
+            if (priceBetween.test(i)) {
+                ordinals.add(i);
+            }
+        }
+        return ordinals.toArray();
+    }
+
+    // checks if price of car with given ordinal is in [priceFrom, priceTo], used for single cars (e.g. query filters)
+    // and by scanPriceBetween, cars without price do not pass
+    default IntPredicate priceBetween(BigDecimal priceFrom, BigDecimal priceTo) {
+        return ordinal -> {
+            BigDecimal price = getPrice(ordinal);
+            return price != null && price.compareTo(priceFrom) >= 0 && price.compareTo(priceTo) <= 0;
+        };
+    }
+
+    default int[] scanMileageAtLeast(int mileageFrom) {
+        IntArrayList ordinals = new IntArrayList();
+        for (int i = 0; i < size(); i++) {
+            if (getMileage(i) >= mileageFrom) {
+                ordinals.add(i);
+            }
+        }
+        return ordinals.toArray();
+    }
+
+    // number of cars per color ordinal, cars without color are skipped
+    default long[] scanColorCounts() {
+        long[] counts = new long[Color.values().length];
+        for (int i = 0; i < size(); i++) {
+            Color color = getColor(i);
+            if (color != null) {
+                counts[color.ordinal()]++;
+            }
+        }
+        return counts;
+    }
+
+    // both cars have to have a price
+    default int comparePrices(int ordinal1, int ordinal2) {
+        return getPrice(ordinal1).compareTo(getPrice(ordinal2));
+    }
+
+}
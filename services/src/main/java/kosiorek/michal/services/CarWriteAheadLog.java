@@ -0,0 +1,247 @@
+package kosiorek.michal.services;
+
+import kosiorek.michal.exceptions.ExceptionCode;
+import kosiorek.michal.exceptions.MyException;
+import kosiorek.michal.model.Car;
+import kosiorek.michal.model.enums.Color;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/*
+ * Append only log of added cars.
+ *
+ * record:  payload length, CRC32 of payload (ints), payload - model, price, color, mileage and components
+ *          written with DataOutputStream, every nullable value is preceded by a boolean
+ *
+ * records appended by many threads are written and forced to disk together by whichever thread commits first (group commit),
+ * a record which was not written completely (crash during write) is dropped when the log is opened again
+ *
+ * the first failed write or force fails the log - the group was taken from pending records and may be torn in the file,
+ * so every later append and commit throws instead of writing records after it which replay would never reach
+ */
+class CarWriteAheadLog implements AutoCloseable {
+
+    private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+    private static final Color[] COLORS = Color.values();
+
+    private final FileChannel channel;
+
+    // records appended but not committed yet
+    private final Object appendLock = new Object();
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long appendedSequence;
+
+    private final Object commitLock = new Object();
+    private volatile long committedSequence;
+    private volatile Exception failure;
+
+    // channel has to be positioned after the last complete record, e.g. by open
+    CarWriteAheadLog(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    // every complete record is passed to replay in the order of appending, new records are appended after them
+    static CarWriteAheadLog open(Path path, Consumer<Car> replay) {
+
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                long end = replay(channel, replay);
+                channel.truncate(end);
+                channel.position(end);
+                return new CarWriteAheadLog(channel);
+            } catch (RuntimeException | IOException e) {
+                channel.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new MyException(ExceptionCode.OTHER, "Write ahead log can not be opened: " + e.getMessage());
+        }
+    }
+
+    // returns sequence number of the record, it is durable after commit(sequence)
+    long append(Car car) {
+
+        byte[] record = encode(car);
+        checkNotFailed();
+        synchronized (appendLock) {
+            pending.write(record, 0, record.length);
+            return ++appendedSequence;
+        }
+    }
+
+    // writes and forces all pending records unless record with given sequence number was already committed by another thread
+    void commit(long sequence) {
+
+        synchronized (commitLock) {
+            if (committedSequence >= sequence) {
+                return;
+            }
+
+            checkNotFailed();
+
+            byte[] group;
+            long groupSequence;
+            synchronized (appendLock) {
+                group = pending.toByteArray();
+                pending.reset();
+                groupSequence = appendedSequence;
+            }
+
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(group);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            } catch (IOException | RuntimeException e) {
+                failure = e;
+                throw new MyException(ExceptionCode.OTHER, "Write ahead log can not be written: " + e.getMessage());
+            }
+            committedSequence = groupSequence;
+        }
+    }
+
+    // record with given sequence number is durable
+    boolean isCommitted(long sequence) {
+        return committedSequence >= sequence;
+    }
+
+    void commit() {
+        long sequence;
+        synchronized (appendLock) {
+            sequence = appendedSequence;
+        }
+        commit(sequence);
+    }
+
+    // channel is closed also when the last commit fails
+    @Override
+    public void close() {
+
+        try {
+            commit();
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new MyException(ExceptionCode.OTHER, "Write ahead log can not be closed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void checkNotFailed() {
+        if (failure != null) {
+            throw new MyException(ExceptionCode.OTHER, "Write ahead log failed earlier: " + failure.getMessage());
+        }
+    }
+
+    // position after the last complete record
+    private static long replay(FileChannel channel, Consumer<Car> replay) throws IOException {
+
+        DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(0)), 1 << 16));
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+
+        while (size - position >= RECORD_HEADER_SIZE) {
+            header.clear();
+            input.readFully(header.array());
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length < 0 || length > size - position - RECORD_HEADER_SIZE) {
+                break;
+            }
+
+            byte[] payload = new byte[length];
+            input.readFully(payload);
+            CRC32 crc32 = new CRC32();
+            crc32.update(payload);
+            if ((int) crc32.getValue() != checksum) {
+                break;
+            }
+
+            replay.accept(decode(payload));
+            position += RECORD_HEADER_SIZE + length;
+        }
+
+        return position;
+    }
+
+    private static byte[] encode(Car car) {
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            bytes.write(new byte[RECORD_HEADER_SIZE]);
+            DataOutputStream payload = new DataOutputStream(bytes);
+
+            writeNullable(payload, car.getModel());
+            writeNullable(payload, car.getPrice() == null ? null : car.getPrice().toString());
+            payload.writeByte(car.getColor() == null ? -1 : car.getColor().ordinal());
+            payload.writeInt(car.getMileage());
+            payload.writeInt(car.getComponents() == null ? -1 : car.getComponents().size());
+            if (car.getComponents() != null) {
+                for (String component : car.getComponents()) {
+                    writeNullable(payload, component);
+                }
+            }
+            payload.flush();
+
+            byte[] record = bytes.toByteArray();
+            CRC32 crc32 = new CRC32();
+            crc32.update(record, RECORD_HEADER_SIZE, record.length - RECORD_HEADER_SIZE);
+            ByteBuffer.wrap(record).putInt(record.length - RECORD_HEADER_SIZE).putInt((int) crc32.getValue());
+            return record;
+        } catch (IOException e) {
+            throw new MyException(ExceptionCode.OTHER, "Car can not be written to write ahead log: " + e.getMessage());
+        }
+    }
+
+    private static Car decode(byte[] record) throws IOException {
+
+        DataInputStream payload = new DataInputStream(new ByteArrayInputStream(record));
+        String model = readNullable(payload);
+        String price = readNullable(payload);
+        byte color = payload.readByte();
+        int mileage = payload.readInt();
+        int componentsCount = payload.readInt();
+
+        List<String> components = null;
+        if (componentsCount >= 0) {
+            components = new ArrayList<>(componentsCount);
+            for (int i = 0; i < componentsCount; i++) {
+                components.add(readNullable(payload));
+            }
+        }
+
+        return Car.builder()
+                .model(model)
+                .price(price == null ? null : new BigDecimal(price))
+                .color(color < 0 ? null : COLORS[color])
+                .mileage(mileage)
+                .components(components)
+                .build();
+    }
+
+    private static void writeNullable(DataOutputStream output, String value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            output.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+
+}
@@ -0,0 +1,100 @@
+package kosiorek.michal.services;
+
+import kosiorek.michal.exceptions.ExceptionCode;
+import kosiorek.michal.exceptions.MyException;
+import kosiorek.michal.model.Car;
+import kosiorek.michal.model.enums.Color;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+// append only cars in fixed size chunks, added by one writer and shared by frozen views - a view sees only cars added
+// before it was created, the writer fills only slots after them, so cars are never copied or moved once added
+class ChunkedCarStore {
+
+    static final int CHUNK_SIZE = 4096;
+
+    private Car[][] chunks = new Car[16][];
+    private int size;
+
+    void add(Car car) {
+
+        int chunk = size / CHUNK_SIZE;
+        if (chunk == chunks.length) {
+            // older views keep the previous directory, chunks themselves are shared
+            chunks = Arrays.copyOf(chunks, chunks.length * 2);
+        }
+        if (chunks[chunk] == null) {
+            chunks[chunk] = new Car[CHUNK_SIZE];
+        }
+        chunks[chunk][size % CHUNK_SIZE] = car;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // cars added so far, the view has to be published to readers safely (e.g. through a volatile field)
+    CarStore freeze() {
+        return new View(chunks, size);
+    }
+
+    private static class View implements CarStore {
+
+        private final Car[][] chunks;
+        private final int size;
+
+        private View(Car[][] chunks, int size) {
+            this.chunks = chunks;
+            this.size = size;
+        }
+
+        @Override
+        public void add(Car car) {
+            throw new MyException(ExceptionCode.OTHER, "Car store is read only");
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Car get(int ordinal) {
+
+            if (ordinal < 0 || ordinal >= size) {
+                throw new IndexOutOfBoundsException("Ordinal " + ordinal + " out of " + size + " cars");
+            }
+
+            return chunks[ordinal / CHUNK_SIZE][ordinal % CHUNK_SIZE];
+        }
+
+        @Override
+        public String getModel(int ordinal) {
+            return get(ordinal).getModel();
+        }
+
+        @Override
+        public BigDecimal getPrice(int ordinal) {
+            return get(ordinal).getPrice();
+        }
+
+        @Override
+        public Color getColor(int ordinal) {
+            return get(ordinal).getColor();
+        }
+
+        @Override
+        public int getMileage(int ordinal) {
+            return get(ordinal).getMileage();
+        }
+
+        @Override
+        public List<String> getComponents(int ordinal) {
+            return get(ordinal).getComponents();
+        }
+    }
+
+}
@@ -0,0 +1,145 @@
+package kosiorek.michal.services;
+
+import kosiorek.michal.exceptions.ExceptionCode;
+import kosiorek.michal.exceptions.MyException;
+import kosiorek.michal.model.Car;
+import kosiorek.michal.model.enums.Color;
+import org.eclipse.collections.impl.list.mutable.primitive.ByteArrayList;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.eclipse.collections.impl.map.mutable.primitive.ObjectIntHashMap;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+// keeps every car attribute in its own primitive column, car objects are created only when somebody asks for them
+public class ColumnarCarStore implements CarStore {
+
+    private static final int NULL_ID = -1;
+    private static final byte NULL_SCALE = Byte.MIN_VALUE;
+    private static final Color[] COLORS = Color.values();
+
+    // models and components share one dictionary
+    private final ObjectIntHashMap<String> dictionaryIds = new ObjectIntHashMap<>();
+    private final List<String> dictionary = new ArrayList<>();
+
+    private final IntArrayList modelIds = new IntArrayList();
+    private final LongArrayList unscaledPrices = new LongArrayList();
+    private final ByteArrayList priceScales = new ByteArrayList();
+    private final ByteArrayList colors = new ByteArrayList();
+    private final IntArrayList mileages = new IntArrayList();
+    // components of car i are componentIds[componentOffsets[i] .. componentOffsets[i + 1])
+    private final IntArrayList componentIds = new IntArrayList();
+    private final IntArrayList componentOffsets = IntArrayList.newListWith(0);
+    private final BitSet nullComponents = new BitSet();
+
+    @Override
+    public void add(Car car) {
+
+        if (car == null) {
+            throw new MyException(ExceptionCode.OTHER, "Car is null");
+        }
+
+        BigDecimal price = car.getPrice();
+        if (price != null && (price.unscaledValue().bitLength() > 63 || price.scale() < Byte.MIN_VALUE + 1 || price.scale() > Byte.MAX_VALUE)) {
+            throw new MyException(ExceptionCode.OTHER, "Price can not be stored in columnar store: " + price);
+        }
+
+        int ordinal = size();
+        modelIds.add(idOf(car.getModel()));
+        unscaledPrices.add(price == null ? 0 : price.unscaledValue().longValue());
+        priceScales.add(price == null ? NULL_SCALE : (byte) price.scale());
+        colors.add(car.getColor() == null ? (byte) NULL_ID : (byte) car.getColor().ordinal());
+        mileages.add(car.getMileage());
+
+        if (car.getComponents() == null) {
+            nullComponents.set(ordinal);
+        } else {
+            for (String component : car.getComponents()) {
+                componentIds.add(idOf(component));
+            }
+        }
+        componentOffsets.add(componentIds.size());
+    }
+
+    @Override
+    public int size() {
+        return mileages.size();
+    }
+
+    @Override
+    public Car get(int ordinal) {
+        return Car.builder()
+                .model(getModel(ordinal))
+                .price(getPrice(ordinal))
+                .color(getColor(ordinal))
+                .mileage(getMileage(ordinal))
+                .components(getComponents(ordinal))
+                .build();
+    }
+
+    @Override
+    public String getModel(int ordinal) {
+        return valueOf(modelIds.get(ordinal));
+    }
+
+    @Override
+    public BigDecimal getPrice(int ordinal) {
+        byte scale = priceScales.get(ordinal);
+        return scale == NULL_SCALE ? null : BigDecimal.valueOf(unscaledPrices.get(ordinal), scale);
+    }
+
+    @Override
+    public Color getColor(int ordinal) {
+        byte color = colors.get(ordinal);
+        return color == NULL_ID ? null : COLORS[color];
+    }
+
+    @Override
+    public int getMileage(int ordinal) {
+        return mileages.get(ordinal);
+    }
+
+    @Override
+    public List<String> getComponents(int ordinal) {
+
+        if (nullComponents.get(ordinal)) {
+            return null;
+        }
+
+        int from = componentOffsets.get(ordinal);
+        int to = componentOffsets.get(ordinal + 1);
+        List<String> components = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            components.add(dictionary.get(componentIds.get(i)));
+        }
+        return components;
+    }
+
+    // number of distinct models and components
+    public int getDictionarySize() {
+        return dictionary.size();
+    }
+
+    private int idOf(String value) {
+
+        if (value == null) {
+            return NULL_ID;
+        }
+
+        int id = dictionaryIds.getIfAbsent(value, NULL_ID);
+        if (id == NULL_ID) {
+            id = dictionary.size();
+            dictionary.add(value);
+            dictionaryIds.put(value, id);
+        }
+        return id;
+    }
+
+    private String valueOf(int id) {
+        return id == NULL_ID ? null : dictionary.get(id);
+    }
+
+}
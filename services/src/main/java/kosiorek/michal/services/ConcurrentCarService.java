@@ -0,0 +1,154 @@
+package kosiorek.michal.services;
+
+import kosiorek.michal.exceptions.ExceptionCode;
+import kosiorek.michal.exceptions.MyException;
+import kosiorek.michal.model.Car;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// readers work on immutable car service snapshots without any locking, writers add cars in batches -
+// a full batch (or flush) publishes a new snapshot which shares cars and index segments of the previous one,
+// so publishing indexes the batch and merges only index segments of similar size (see SegmentedCarIndex)
+public class ConcurrentCarService {
+
+    public static final int DEFAULT_BATCH_SIZE = 10_000;
+
+    private final int batchSize;
+    private final Object writeLock = new Object();
+    private final List<Car> pending = new ArrayList<>();
+    private final AtomicLong version = new AtomicLong();
+    // shared by all snapshots, each of them sees cars up to its own size
+    private final ChunkedCarStore carStore = new ChunkedCarStore();
+    private SegmentedCarIndex carIndex;
+    private long indexedCount;
+
+    private volatile CarService snapshot;
+
+    public ConcurrentCarService(CarService carService) {
+        this(carService, DEFAULT_BATCH_SIZE);
+    }
+
+    public ConcurrentCarService(CarService carService, int batchSize) {
+
+        if (carService == null) {
+            throw new MyException(ExceptionCode.OTHER, "Car service is null");
+        }
+
+        if (batchSize < 1) {
+            throw new MyException(ExceptionCode.OTHER, "Batch size must be positive");
+        }
+
+        this.batchSize = batchSize;
+        carService.stream().map(ConcurrentCarService::copyOf).forEach(carStore::add);
+        synchronized (writeLock) {
+            publishFrom(0);
+        }
+    }
+
+    // current consistent state, it is read only - adding cars, enabling aggregates, bitmaps or parallel mode and
+    // setting metrics throw - and its cars are copies made when they were added, with unmodifiable components,
+    // cars are shared by all snapshots though, so readers must not call their setters (Car is a mutable Lombok class)
+    public CarService snapshot() {
+        return snapshot;
+    }
+
+    // version of the current snapshot, increased with every publication
+    public long getVersion() {
+        return version.get();
+    }
+
+    public void addCar(Car car) {
+
+        if (car == null) {
+            throw new MyException(ExceptionCode.OTHER, "Car is null");
+        }
+
+        Car copy = copyOf(car);
+        synchronized (writeLock) {
+            pending.add(copy);
+            if (pending.size() >= batchSize) {
+                publish();
+            }
+        }
+    }
+
+    public void addCars(Collection<Car> cars) {
+
+        if (cars == null || cars.contains(null)) {
+            throw new MyException(ExceptionCode.OTHER, "Cars are null");
+        }
+
+        List<Car> copies = new ArrayList<>(cars.size());
+        cars.forEach(car -> copies.add(copyOf(car)));
+        synchronized (writeLock) {
+            pending.addAll(copies);
+            if (pending.size() >= batchSize) {
+                publish();
+            }
+        }
+    }
+
+    // makes all added cars visible to readers
+    public void flush() {
+        synchronized (writeLock) {
+            publish();
+        }
+    }
+
+    public int getPendingCount() {
+        synchronized (writeLock) {
+            return pending.size();
+        }
+    }
+
+    // number of cars indexed by all publications so far, cars are indexed again when their segment is merged
+    long getIndexedCount() {
+        synchronized (writeLock) {
+            return indexedCount;
+        }
+    }
+
+    int getSegmentCount() {
+        synchronized (writeLock) {
+            return carIndex.getSegmentCount();
+        }
+    }
+
+    private void publish() {
+
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        int from = carStore.size();
+        pending.forEach(carStore::add);
+        pending.clear();
+
+        publishFrom(from);
+        version.incrementAndGet();
+    }
+
+    // indexes cars from ordinal from (with merged older segments) and publishes all cars in a new snapshot
+    private void publishFrom(int from) {
+        CarStore cars = carStore.freeze();
+        carIndex = SegmentedCarIndex.extend(carIndex, cars, from);
+        indexedCount += carIndex.getSegmentSize();
+        snapshot = new CarService(cars, carIndex);
+    }
+
+    // snapshots keep their own copy, so a car changed by the caller after it was added does not change any snapshot
+    private static Car copyOf(Car car) {
+        return Car.builder()
+                .model(car.getModel())
+                .price(car.getPrice())
+                .color(car.getColor())
+                .mileage(car.getMileage())
+                .components(car.getComponents() == null ? null : Collections.unmodifiableList(new ArrayList<>(car.getComponents())))
+                .build();
+    }
+
+}
@@ -0,0 +1,182 @@
+package kosiorek.michal.services;
+
+import kosiorek.michal.exceptions.ExceptionCode;
+import kosiorek.michal.exceptions.MyException;
+import kosiorek.michal.model.Car;
+import kosiorek.michal.model.enums.Color;
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.stream.Stream;
+
+// wraps a store and keeps every price as a long number of minor units (e.g. cents for scale 2) computed once on add,
+// comparisons, range scans, query price filters and the price index of TreeCarIndex work on longs, exact BigDecimal
+// prices are still returned by getPrice and get
+public class FixedPointCarStore implements CarStore {
+
+    private static final BigDecimal MIN_LONG = BigDecimal.valueOf(Long.MIN_VALUE);
+    private static final BigDecimal MAX_LONG = BigDecimal.valueOf(Long.MAX_VALUE);
+
+    private final CarStore delegate;
+    private final int scale;
+
+    private final LongArrayList minorUnitPrices = new LongArrayList();
+    // prices which are null or can not be expressed in minor units without rounding, compared as BigDecimal
+    private final BitSet notFixedPoint = new BitSet();
+
+    public FixedPointCarStore(CarStore delegate, int scale) {
+
+        if (delegate == null) {
+            throw new MyException(ExceptionCode.OTHER, "Store is null");
+        }
+
+        if (scale < 0) {
+            throw new MyException(ExceptionCode.OTHER, "Scale can not be negative");
+        }
+
+        if (delegate.size() > 0) {
+            throw new MyException(ExceptionCode.OTHER, "Store has to be empty");
+        }
+
+        this.delegate = delegate;
+        this.scale = scale;
+    }
+
+    @Override
+    public void add(Car car) {
+
+        delegate.add(car);
+
+        int ordinal = minorUnitPrices.size();
+        Long minorUnits = toExactMinorUnits(car.getPrice());
+        minorUnitPrices.add(minorUnits == null ? 0 : minorUnits);
+        if (minorUnits == null) {
+            notFixedPoint.set(ordinal);
+        }
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    public boolean hasMinorUnitPrice(int ordinal) {
+        return ordinal < minorUnitPrices.size() && !notFixedPoint.get(ordinal);
+    }
+
+    // price of car in minor units, 120.5 with scale 2 is 12050
+    public long getMinorUnitPrice(int ordinal) {
+
+        if (!hasMinorUnitPrice(ordinal)) {
+            throw new MyException(ExceptionCode.OTHER, "Price has no exact minor unit value: " + delegate.getPrice(ordinal));
+        }
+
+        return minorUnitPrices.get(ordinal);
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public Car get(int ordinal) {
+        return delegate.get(ordinal);
+    }
+
+    @Override
+    public String getModel(int ordinal) {
+        return delegate.getModel(ordinal);
+    }
+
+    @Override
+    public BigDecimal getPrice(int ordinal) {
+        return delegate.getPrice(ordinal);
+    }
+
+    @Override
+    public Color getColor(int ordinal) {
+        return delegate.getColor(ordinal);
+    }
+
+    @Override
+    public int getMileage(int ordinal) {
+        return delegate.getMileage(ordinal);
+    }
+
+    @Override
+    public List<String> getComponents(int ordinal) {
+        return delegate.getComponents(ordinal);
+    }
+
+    @Override
+    public Stream<Car> stream() {
+        return delegate.stream();
+    }
+
+    // bounds are converted to minor units once, prices between two minor units can not exist in the long column
+    @Override
+    public IntPredicate priceBetween(BigDecimal priceFrom, BigDecimal priceTo) {
+
+        long from = toMinorUnits(priceFrom, RoundingMode.CEILING);
+        long to = toMinorUnits(priceTo, RoundingMode.FLOOR);
+
+        return ordinal -> {
+            if (!notFixedPoint.get(ordinal)) {
+                long price = minorUnitPrices.get(ordinal);
+                return price >= from && price <= to;
+            }
+            BigDecimal price = delegate.getPrice(ordinal);
+            return price != null && price.compareTo(priceFrom) >= 0 && price.compareTo(priceTo) <= 0;
+        };
+    }
+
+    @Override
+    public int[] scanMileageAtLeast(int mileageFrom) {
+        return delegate.scanMileageAtLeast(mileageFrom);
+    }
+
+    @Override
+    public long[] scanColorCounts() {
+        return delegate.scanColorCounts();
+    }
+
+    @Override
+    public int comparePrices(int ordinal1, int ordinal2) {
+
+        if (notFixedPoint.get(ordinal1) || notFixedPoint.get(ordinal2)) {
+            return delegate.comparePrices(ordinal1, ordinal2);
+        }
+
+        return Long.compare(minorUnitPrices.get(ordinal1), minorUnitPrices.get(ordinal2));
+    }
+
+    private Long toExactMinorUnits(BigDecimal price) {
+
+        if (price == null) {
+            return null;
+        }
+
+        try {
+            return price.setScale(scale, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            return null;
+        }
+    }
+
+    // bounds outside of long range are clamped, no price in the column can be beyond them
+    long toMinorUnits(BigDecimal price, RoundingMode roundingMode) {
+
+        BigDecimal minorUnits = price.setScale(scale, roundingMode).movePointRight(scale);
+        if (minorUnits.compareTo(MIN_LONG) < 0) {
+            return Long.MIN_VALUE;
+        }
+        if (minorUnits.compareTo(MAX_LONG) > 0) {
+            return Long.MAX_VALUE;
+        }
+        return minorUnits.longValueExact();
+    }
+}
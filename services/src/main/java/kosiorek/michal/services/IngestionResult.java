@@ -0,0 +1,91 @@
+package kosiorek.michal.services;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class IngestionResult {
+
+    private final long validCount;
+    private final ValidationReport validationReport;
+    private final long processedCount;
+    private final long elapsedNanos;
+    private final List<ShardResult> shardResults;
+
+    public IngestionResult(long validCount, ValidationReport validationReport, long processedCount, long elapsedNanos) {
+        this(validCount, validationReport, processedCount, elapsedNanos, Collections.emptyList());
+    }
+
+    public IngestionResult(long validCount, ValidationReport validationReport, long processedCount, long elapsedNanos, List<ShardResult> shardResults) {
+        this.validCount = validCount;
+        this.validationReport = validationReport;
+        this.processedCount = processedCount;
+        this.elapsedNanos = elapsedNanos;
+        this.shardResults = Collections.unmodifiableList(shardResults);
+    }
+
+    public long getValidCount() {
+        return validCount;
+    }
+
+    public ValidationReport getValidationReport() {
+        return validationReport;
+    }
+
+    // broken rules keyed by car number (starting from 1) in input order
+    public Map<Integer, Set<String>> getFailedRulesByCar() {
+        return validationReport.getFailedRulesByCar();
+    }
+
+    /*
+     * validation errors (rule -> message) keyed by car number (starting from 1) in input order,
+     * full messages are kept only for the report samples, other cars get "not valid" for every broken rule
+     */
+    @Deprecated
+    public Map<Integer, Map<String, String>> getErrors() {
+        Map<Integer, Map<String, String>> errors = new LinkedHashMap<>();
+        validationReport.getFailedRulesByCar().forEach((carNumber, rules) -> {
+            Map<String, String> sample = validationReport.getSamples().get(carNumber);
+            if (sample != null) {
+                errors.put(carNumber, sample);
+            } else {
+                Map<String, String> messages = new LinkedHashMap<>();
+                rules.forEach(rule -> messages.put(rule, "not valid"));
+                errors.put(carNumber, messages);
+            }
+        });
+        return Collections.unmodifiableMap(errors);
+    }
+
+    public long getProcessedCount() {
+        return processedCount;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    // one result per shard in input order, empty when cars did not come from shards
+    public List<ShardResult> getShardResults() {
+        return shardResults;
+    }
+
+    public List<ShardResult> getFailedShards() {
+        return shardResults.stream().filter(ShardResult::isFailed).collect(Collectors.toList());
+    }
+
+    public double getCarsPerSecond() {
+        return elapsedNanos == 0 ? 0 : processedCount * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "PROCESSED: " + processedCount + ", VALID: " + validCount + ", INVALID: " + validationReport.getInvalidCount()
+                + ", CARS/SEC: " + String.format("%.0f", getCarsPerSecond())
+                + (shardResults.isEmpty() ? "" : ", SHARDS: " + shardResults.size() + ", FAILED SHARDS: " + getFailedShards().size());
+    }
+
+}
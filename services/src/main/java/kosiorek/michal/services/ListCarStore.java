@@ -0,0 +1,61 @@
+package kosiorek.michal.services;
+
+import kosiorek.michal.model.Car;
+import kosiorek.michal.model.enums.Color;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+// default store which keeps car objects as they were added
+public class ListCarStore implements CarStore {
+
+    private final List<Car> cars = new ArrayList<>();
+
+    @Override
+    public void add(Car car) {
+        cars.add(car);
+    }
+
+    @Override
+    public int size() {
+        return cars.size();
+    }
+
+    @Override
+    public Car get(int ordinal) {
+        return cars.get(ordinal);
+    }
+
+    @Override
+    public String getModel(int ordinal) {
+        return cars.get(ordinal).getModel();
+    }
+
+    @Override
+    public BigDecimal getPrice(int ordinal) {
+        return cars.get(ordinal).getPrice();
+    }
+
+    @Override
+    public Color getColor(int ordinal) {
+        return cars.get(ordinal).getColor();
+    }
+
+    @Override
+    public int getMileage(int ordinal) {
+        return cars.get(ordinal).getMileage();
+    }
+
+    @Override
+    public List<String> getComponents(int ordinal) {
+        return cars.get(ordinal).getComponents();
+    }
+
+    @Override
+    public Stream<Car> stream() {
+        return cars.stream();
+    }
+
+}
@@ -0,0 +1,403 @@
+package kosiorek.michal.services;
+
+import kosiorek.michal.exceptions.ExceptionCode;
+import kosiorek.michal.exceptions.MyException;
+import kosiorek.michal.model.Car;
+import kosiorek.michal.model.enums.Color;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+import org.eclipse.collections.impl.map.mutable.primitive.ObjectIntHashMap;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Off heap car store kept in memory mapped files of one directory, data written before close is there after reopening.
+ *
+ * cars.dat:        header (magic, version, cars count (ints), components count (long)) padded to one record,
+ *                  then one fixed width record per car:
+ *                  model id (int), unscaled price (long), price scale (byte), color ordinal (byte), mileage (int),
+ *                  first component position (long), components count (int)
+ * components.dat:  component ids (int) of all cars one after another
+ * dictionary.dat:  models and components as (int length, UTF-8 bytes), id is position in file, loaded on heap on open
+ * null values are stored as -1 ids / counts and Byte.MIN_VALUE price scale
+ *
+ * files are mapped in 64 MB segments so the store is not limited by 2 GB mapping size, scans read mapped records
+ * directly - a car object is created only by get
+ */
+public class MappedCarStore implements CarStore, AutoCloseable {
+
+    private static final int MAGIC = 0x4D434152;
+    private static final int VERSION = 1;
+    private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final int RECORD_SIZE = 32;
+    private static final int NULL_ID = -1;
+    private static final byte NULL_SCALE = Byte.MIN_VALUE;
+    private static final Color[] COLORS = Color.values();
+    private static final BigInteger LONG_MIN = BigInteger.valueOf(Long.MIN_VALUE);
+    private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+    // header fields
+    private static final int COUNT = 8;
+    private static final int COMPONENTS_COUNT = 12;
+
+    // record fields
+    private static final int MODEL = 0;
+    private static final int UNSCALED_PRICE = 4;
+    private static final int SCALE = 12;
+    private static final int COLOR = 13;
+    private static final int MILEAGE = 14;
+    private static final int COMPONENTS_FROM = 18;
+    private static final int COMPONENTS_SIZE = 26;
+
+    private final FileChannel recordsChannel;
+    private final FileChannel componentsChannel;
+    private final FileChannel dictionaryChannel;
+    private final List<MappedByteBuffer> recordSegments = new ArrayList<>();
+    private final List<MappedByteBuffer> componentSegments = new ArrayList<>();
+
+    private final ObjectIntHashMap<String> dictionaryIds = new ObjectIntHashMap<>();
+    private final List<String> dictionary = new ArrayList<>();
+
+    private int size;
+    private long componentsCount;
+
+    // opens store kept in directory or creates an empty one
+    public MappedCarStore(String directory) {
+
+        try {
+            Path path = Paths.get(directory);
+            Files.createDirectories(path);
+            recordsChannel = FileChannel.open(path.resolve("cars.dat"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            componentsChannel = FileChannel.open(path.resolve("components.dat"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            dictionaryChannel = FileChannel.open(path.resolve("dictionary.dat"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            boolean created = recordsChannel.size() == 0;
+            MappedByteBuffer header = segment(recordSegments, recordsChannel, 0);
+            if (created) {
+                header.putInt(0, MAGIC);
+                header.putInt(4, VERSION);
+            } else if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new MyException(ExceptionCode.OTHER, "Directory does not contain a car store: " + directory);
+            }
+            size = header.getInt(COUNT);
+            componentsCount = header.getLong(COMPONENTS_COUNT);
+
+            readDictionary();
+        } catch (IOException e) {
+            throw new MyException(ExceptionCode.OTHER, "Car store can not be opened: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void add(Car car) {
+
+        if (car == null) {
+            throw new MyException(ExceptionCode.OTHER, "Car is null");
+        }
+
+        BigDecimal price = car.getPrice();
+        if (price != null && (price.unscaledValue().bitLength() > 63 || price.scale() < Byte.MIN_VALUE + 1 || price.scale() > Byte.MAX_VALUE)) {
+            throw new MyException(ExceptionCode.OTHER, "Price can not be stored in mapped store: " + price);
+        }
+
+        List<String> components = car.getComponents();
+        long componentsFrom = componentsCount;
+        if (components != null) {
+            for (String component : components) {
+                long position = componentsCount++ * Integer.BYTES;
+                componentSegment(position).putInt((int) (position % SEGMENT_SIZE), idOf(component));
+            }
+        }
+
+        long position = recordPosition(size);
+        ByteBuffer segment = recordSegment(position);
+        int offset = (int) (position % SEGMENT_SIZE);
+        segment.putInt(offset + MODEL, idOf(car.getModel()));
+        segment.putLong(offset + UNSCALED_PRICE, price == null ? 0 : price.unscaledValue().longValue());
+        segment.put(offset + SCALE, price == null ? NULL_SCALE : (byte) price.scale());
+        segment.put(offset + COLOR, car.getColor() == null ? (byte) NULL_ID : (byte) car.getColor().ordinal());
+        segment.putInt(offset + MILEAGE, car.getMileage());
+        segment.putLong(offset + COMPONENTS_FROM, componentsFrom);
+        segment.putInt(offset + COMPONENTS_SIZE, components == null ? NULL_ID : components.size());
+
+        // car becomes visible after reopening only when its record is complete
+        size++;
+        ByteBuffer header = recordSegments.get(0);
+        header.putLong(COMPONENTS_COUNT, componentsCount);
+        header.putInt(COUNT, size);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Car get(int ordinal) {
+        return Car.builder()
+                .model(getModel(ordinal))
+                .price(getPrice(ordinal))
+                .color(getColor(ordinal))
+                .mileage(getMileage(ordinal))
+                .components(getComponents(ordinal))
+                .build();
+    }
+
+    @Override
+    public String getModel(int ordinal) {
+        long position = recordPosition(ordinal);
+        int id = recordSegment(position).getInt((int) (position % SEGMENT_SIZE) + MODEL);
+        return id == NULL_ID ? null : dictionary.get(id);
+    }
+
+    @Override
+    public BigDecimal getPrice(int ordinal) {
+        long position = recordPosition(ordinal);
+        ByteBuffer segment = recordSegment(position);
+        int offset = (int) (position % SEGMENT_SIZE);
+        byte scale = segment.get(offset + SCALE);
+        return scale == NULL_SCALE ? null : BigDecimal.valueOf(segment.getLong(offset + UNSCALED_PRICE), scale);
+    }
+
+    @Override
+    public Color getColor(int ordinal) {
+        long position = recordPosition(ordinal);
+        byte color = recordSegment(position).get((int) (position % SEGMENT_SIZE) + COLOR);
+        return color == NULL_ID ? null : COLORS[color];
+    }
+
+    @Override
+    public int getMileage(int ordinal) {
+        long position = recordPosition(ordinal);
+        return recordSegment(position).getInt((int) (position % SEGMENT_SIZE) + MILEAGE);
+    }
+
+    @Override
+    public List<String> getComponents(int ordinal) {
+
+        long position = recordPosition(ordinal);
+        ByteBuffer segment = recordSegment(position);
+        int offset = (int) (position % SEGMENT_SIZE);
+        int count = segment.getInt(offset + COMPONENTS_SIZE);
+        if (count == NULL_ID) {
+            return null;
+        }
+
+        long from = segment.getLong(offset + COMPONENTS_FROM);
+        List<String> components = new ArrayList<>(count);
+        for (long i = from; i < from + count; i++) {
+            long componentPosition = i * Integer.BYTES;
+            components.add(dictionary.get(componentSegment(componentPosition).getInt((int) (componentPosition % SEGMENT_SIZE))));
+        }
+        return components;
+    }
+
+    // unscaled prices are compared with range bounds rescaled to the scale of each record - no BigDecimal per car
+    @Override
+    public int[] scanPriceBetween(BigDecimal priceFrom, BigDecimal priceTo) {
+
+        long[][] boundsByScale = new long[256][];
+        boolean[] empty = new boolean[256];
+        IntArrayList ordinals = new IntArrayList();
+
+        for (int i = 0; i < size; i++) {
+            long position = recordPosition(i);
+            ByteBuffer segment = recordSegment(position);
+            int offset = (int) (position % SEGMENT_SIZE);
+            byte scale = segment.get(offset + SCALE);
+            if (scale == NULL_SCALE) {
+                continue;
+            }
+
+            int scaleIndex = scale - Byte.MIN_VALUE;
+            if (boundsByScale[scaleIndex] == null && !empty[scaleIndex]) {
+                boundsByScale[scaleIndex] = bounds(priceFrom, priceTo, scale);
+                empty[scaleIndex] = boundsByScale[scaleIndex] == null;
+            }
+            long[] bounds = boundsByScale[scaleIndex];
+
+            long unscaledPrice = segment.getLong(offset + UNSCALED_PRICE);
+            if (bounds != null && unscaledPrice >= bounds[0] && unscaledPrice <= bounds[1]) {
+                ordinals.add(i);
+            }
+        }
+
+        return ordinals.toArray();
+    }
+
+    @Override
+    public int[] scanMileageAtLeast(int mileageFrom) {
+
+        IntArrayList ordinals = new IntArrayList();
+        for (int i = 0; i < size; i++) {
+            long position = recordPosition(i);
+            if (recordSegment(position).getInt((int) (position % SEGMENT_SIZE) + MILEAGE) >= mileageFrom) {
+                ordinals.add(i);
+            }
+        }
+        return ordinals.toArray();
+    }
+
+    @Override
+    public long[] scanColorCounts() {
+
+        long[] counts = new long[COLORS.length];
+        for (int i = 0; i < size; i++) {
+            long position = recordPosition(i);
+            byte color = recordSegment(position).get((int) (position % SEGMENT_SIZE) + COLOR);
+            if (color != NULL_ID) {
+                counts[color]++;
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public int comparePrices(int ordinal1, int ordinal2) {
+
+        long position1 = recordPosition(ordinal1);
+        long position2 = recordPosition(ordinal2);
+        ByteBuffer segment1 = recordSegment(position1);
+        ByteBuffer segment2 = recordSegment(position2);
+        int offset1 = (int) (position1 % SEGMENT_SIZE);
+        int offset2 = (int) (position2 % SEGMENT_SIZE);
+
+        if (segment1.get(offset1 + SCALE) == segment2.get(offset2 + SCALE)) {
+            return Long.compare(segment1.getLong(offset1 + UNSCALED_PRICE), segment2.getLong(offset2 + UNSCALED_PRICE));
+        }
+        return getPrice(ordinal1).compareTo(getPrice(ordinal2));
+    }
+
+    // number of distinct models and components
+    public int getDictionarySize() {
+        return dictionary.size();
+    }
+
+    // writes all changes to disk
+    public void force() {
+
+        try {
+            recordSegments.forEach(MappedByteBuffer::force);
+            componentSegments.forEach(MappedByteBuffer::force);
+            dictionaryChannel.force(false);
+        } catch (IOException e) {
+            throw new MyException(ExceptionCode.OTHER, "Car store can not be written: " + e.getMessage());
+        }
+    }
+
+    // mapped segments are released by garbage collector, store can not be used after close
+    @Override
+    public void close() {
+
+        force();
+        try {
+            recordsChannel.close();
+            componentsChannel.close();
+            dictionaryChannel.close();
+        } catch (IOException e) {
+            throw new MyException(ExceptionCode.OTHER, "Car store can not be closed: " + e.getMessage());
+        }
+    }
+
+    // [from, to] as unscaled values with given scale, null when no unscaled long value is in range
+    private static long[] bounds(BigDecimal priceFrom, BigDecimal priceTo, int scale) {
+
+        BigInteger from = priceFrom.setScale(scale, RoundingMode.CEILING).unscaledValue();
+        BigInteger to = priceTo.setScale(scale, RoundingMode.FLOOR).unscaledValue();
+        if (from.compareTo(to) > 0 || from.compareTo(LONG_MAX) > 0 || to.compareTo(LONG_MIN) < 0) {
+            return null;
+        }
+
+        return new long[]{from.max(LONG_MIN).longValue(), to.min(LONG_MAX).longValue()};
+    }
+
+    private static long recordPosition(int ordinal) {
+        // first record slot is the header
+        return (ordinal + 1L) * RECORD_SIZE;
+    }
+
+    private ByteBuffer recordSegment(long position) {
+        return segment(recordSegments, recordsChannel, (int) (position / SEGMENT_SIZE));
+    }
+
+    private ByteBuffer componentSegment(long position) {
+        return segment(componentSegments, componentsChannel, (int) (position / SEGMENT_SIZE));
+    }
+
+    // records and component ids never cross segment boundary, segments are mapped when first used
+    private static MappedByteBuffer segment(List<MappedByteBuffer> segments, FileChannel channel, int index) {
+
+        if (index < segments.size()) {
+            return segments.get(index);
+        }
+
+        try {
+            for (int i = segments.size(); i <= index; i++) {
+                segments.add(channel.map(FileChannel.MapMode.READ_WRITE, (long) i * SEGMENT_SIZE, SEGMENT_SIZE));
+            }
+        } catch (IOException e) {
+            throw new MyException(ExceptionCode.OTHER, "Car store segment can not be mapped: " + e.getMessage());
+        }
+        return segments.get(index);
+    }
+
+    private void readDictionary() throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) dictionaryChannel.size());
+        while (buffer.hasRemaining() && dictionaryChannel.read(buffer, buffer.position()) >= 0) {
+            // read whole file
+        }
+        buffer.flip();
+
+        int length;
+        while (buffer.remaining() >= Integer.BYTES && (length = buffer.getInt(buffer.position())) <= buffer.remaining() - Integer.BYTES) {
+            buffer.getInt();
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            String value = new String(bytes, StandardCharsets.UTF_8);
+            dictionaryIds.put(value, dictionary.size());
+            dictionary.add(value);
+        }
+        // value which was not written completely is dropped
+        dictionaryChannel.truncate(buffer.position());
+        dictionaryChannel.position(buffer.position());
+    }
+
+    private int idOf(String value) {
+
+        if (value == null) {
+            return NULL_ID;
+        }
+
+        int id = dictionaryIds.getIfAbsent(value, NULL_ID);
+        if (id == NULL_ID) {
+            id = dictionary.size();
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer entry = ByteBuffer.allocate(Integer.BYTES + bytes.length).putInt(bytes.length).put(bytes);
+            entry.flip();
+            try {
+                while (entry.hasRemaining()) {
+                    dictionaryChannel.write(entry);
+                }
+            } catch (IOException e) {
+                throw new MyException(ExceptionCode.OTHER, "Car store dictionary can not be written: " + e.getMessage());
+            }
+            dictionary.add(value);
+            dictionaryIds.put(value, id);
+        }
+        return id;
+    }
+
+}
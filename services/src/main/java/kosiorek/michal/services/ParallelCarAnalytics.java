@@ -0,0 +1,107 @@
+package kosiorek.michal.services;
+
+import kosiorek.michal.model.enums.Color;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+// aggregations done as one pass over car ordinals with mergeable partial results - parallel pass runs on the pool
+// of the calling fork join task, partial results are merged in ordinal order so ties are resolved as in sequential pass
+final class ParallelCarAnalytics {
+
+    private static final Color[] COLORS = Color.values();
+
+    private ParallelCarAnalytics() {
+    }
+
+    // number of cars per color ordinal
+    static long[] colorCounts(CarStore cars, boolean parallel) {
+        return ordinals(cars, parallel)
+                .collect(
+                        () -> new long[COLORS.length],
+                        (counts, ordinal) -> {
+                            Color color = cars.getColor(ordinal);
+                            if (color != null) {
+                                counts[color.ordinal()]++;
+                            }
+                        },
+                        (counts, other) -> {
+                            for (int i = 0; i < counts.length; i++) {
+                                counts[i] += other[i];
+                            }
+                        });
+    }
+
+    // model -> ordinal of the first of its most expensive cars
+    static Map<String, Integer> mostExpensiveByModel(CarStore cars, boolean parallel) {
+        return ordinals(cars, parallel)
+                .collect(
+                        HashMap::new,
+                        (mostExpensive, ordinal) -> {
+                            String model = cars.getModel(ordinal);
+                            if (model != null && cars.getPrice(ordinal) != null) {
+                                keepMoreExpensive(cars, mostExpensive, model, ordinal);
+                            }
+                        },
+                        (mostExpensive, other) -> other.forEach((model, ordinal) -> keepMoreExpensive(cars, mostExpensive, model, ordinal)));
+    }
+
+    // ordinals of all cars with the biggest price
+    static int[] maxPriceOrdinals(CarStore cars, boolean parallel) {
+        return ordinals(cars, parallel)
+                .collect(
+                        () -> new MaxPrice(cars),
+                        MaxPrice::accept,
+                        MaxPrice::merge)
+                .ordinals.toArray();
+    }
+
+    private static IntStream ordinals(CarStore cars, boolean parallel) {
+        IntStream ordinals = IntStream.range(0, cars.size());
+        return parallel ? ordinals.parallel() : ordinals;
+    }
+
+    // ordinal comes after every ordinal already in the map, so on equal prices the car already there stays
+    private static void keepMoreExpensive(CarStore cars, Map<String, Integer> mostExpensive, String model, int ordinal) {
+        Integer current = mostExpensive.get(model);
+        if (current == null || cars.comparePrices(ordinal, current) > 0) {
+            mostExpensive.put(model, ordinal);
+        }
+    }
+
+    private static class MaxPrice {
+
+        private final CarStore cars;
+        private final IntArrayList ordinals = new IntArrayList();
+
+        private MaxPrice(CarStore cars) {
+            this.cars = cars;
+        }
+
+        private void accept(int ordinal) {
+            if (cars.getPrice(ordinal) != null) {
+                add(ordinal);
+            }
+        }
+
+        private void merge(MaxPrice other) {
+            for (int i = 0; i < other.ordinals.size(); i++) {
+                add(other.ordinals.get(i));
+            }
+        }
+
+        // prices equal by comparePrices (e.g. 120 and 120.00) are treated as the same price
+        private void add(int ordinal) {
+            int comparison = ordinals.isEmpty() ? 1 : cars.comparePrices(ordinal, ordinals.get(0));
+            if (comparison > 0) {
+                ordinals.clear();
+            }
+            if (comparison >= 0) {
+                ordinals.add(ordinal);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,307 @@
+package kosiorek.michal.services;
+
+import kosiorek.michal.converters.CarsSnapshotConverter;
+import kosiorek.michal.exceptions.ExceptionCode;
+import kosiorek.michal.exceptions.MyException;
+import kosiorek.michal.model.Car;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/*
+ * Car service kept in a directory as the last snapshot plus write ahead log of cars added after it,
+ * so saving an added car costs one log append instead of writing all cars again.
+ *
+ * cars-<generation>.snapshot   all cars added before log of the same generation was started
+ * cars-<generation>.wal        cars added since then
+ *
+ * compaction starts a new log generation and writes snapshot of the new generation in the background,
+ * older files are deleted only after the new snapshot is complete - after a crash at any moment cars are restored
+ * from the newest complete snapshot and every log not older than it
+ *
+ * an added car becomes visible in car service only after its log record is committed, in the order of the log, so
+ * readers never see a car which a restart would lose - when a log write fails the log fails for good, the car and
+ * all cars added after it are never visible and every later add throws, the service has to be opened again
+ */
+public class PersistentCarService implements AutoCloseable {
+
+    public static final int DEFAULT_COMPACTION_THRESHOLD = 100_000;
+
+    private static final Pattern FILE_NAME = Pattern.compile("cars-(\\d+)\\.(snapshot|wal)");
+
+    private final Path directory;
+    private final int compactionThreshold;
+    private final CarService carService;
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "car-log-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private CarWriteAheadLog log;
+    // appended cars in log order which are not in car service yet, waiting for their commit
+    private final Deque<LoggedCar> uncommitted = new ArrayDeque<>();
+    private long generation;
+    private long loggedSinceCompaction;
+    private Future<?> compaction = CompletableFuture.completedFuture(null);
+
+    private PersistentCarService(Path directory, int compactionThreshold, CarService carService, long generation, long logged) {
+        this.directory = directory;
+        this.compactionThreshold = compactionThreshold;
+        this.carService = carService;
+        this.generation = generation;
+        this.loggedSinceCompaction = logged;
+    }
+
+    public static PersistentCarService open(String directory) {
+        return open(directory, null, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    // empty directory is filled with cars from seedJsonFilename when it is given
+    public static PersistentCarService open(String directory, String seedJsonFilename, int compactionThreshold) {
+
+        if (compactionThreshold < 1) {
+            throw new MyException(ExceptionCode.OTHER, "Compaction threshold must be positive");
+        }
+
+        try {
+            Path path = Paths.get(directory);
+            Files.createDirectories(path);
+
+            List<Long> snapshots = generations(path, "snapshot");
+            List<Long> logs = generations(path, "wal");
+
+            CarService carService;
+            long snapshotGeneration;
+            if (!snapshots.isEmpty()) {
+                snapshotGeneration = snapshots.get(snapshots.size() - 1);
+                carService = CarService.fromSnapshot(file(path, snapshotGeneration, "snapshot").toString());
+            } else if (logs.isEmpty() && seedJsonFilename != null) {
+                snapshotGeneration = 0;
+                carService = new CarService(seedJsonFilename);
+                carService.saveSnapshot(file(path, 0, "snapshot").toString());
+            } else {
+                snapshotGeneration = 0;
+                carService = new CarService(new ArrayList<>());
+            }
+
+            // every log since the snapshot is replayed, only the newest one stays open for appending
+            long currentGeneration = snapshotGeneration;
+            for (long logGeneration : logs) {
+                if (logGeneration >= snapshotGeneration) {
+                    currentGeneration = logGeneration;
+                }
+            }
+
+            long[] replayed = {0};
+            Consumer<Car> replay = car -> {
+                carService.addCar(car);
+                replayed[0]++;
+            };
+            for (long logGeneration : logs) {
+                if (logGeneration >= snapshotGeneration && logGeneration < currentGeneration) {
+                    CarWriteAheadLog.open(file(path, logGeneration, "wal"), replay).close();
+                }
+            }
+            CarWriteAheadLog currentLog = CarWriteAheadLog.open(file(path, currentGeneration, "wal"), replay);
+
+            PersistentCarService persistentCarService = new PersistentCarService(path, compactionThreshold, carService, currentGeneration, replayed[0]);
+            persistentCarService.log = currentLog;
+            return persistentCarService;
+
+        } catch (IOException e) {
+            throw new MyException(ExceptionCode.OTHER, "Car service directory can not be opened: " + e.getMessage());
+        }
+    }
+
+    // car is durable when the method returns, cars added by other threads at the same time share one disk write
+    public void addCar(Car car) {
+
+        if (car == null) {
+            throw new MyException(ExceptionCode.OTHER, "Car is null");
+        }
+
+        long sequence;
+        CarWriteAheadLog currentLog;
+        synchronized (this) {
+            currentLog = log;
+            sequence = currentLog.append(car);
+            uncommitted.add(new LoggedCar(currentLog, sequence, car));
+            logged(1);
+        }
+        currentLog.commit(sequence);
+        applyCommitted();
+    }
+
+    // all cars are written with a single disk write
+    public void addCars(Collection<Car> cars) {
+
+        if (cars == null || cars.contains(null)) {
+            throw new MyException(ExceptionCode.OTHER, "Cars are null");
+        }
+
+        long sequence = 0;
+        CarWriteAheadLog currentLog;
+        synchronized (this) {
+            currentLog = log;
+            for (Car car : cars) {
+                sequence = currentLog.append(car);
+                uncommitted.add(new LoggedCar(currentLog, sequence, car));
+            }
+            logged(cars.size());
+        }
+        currentLog.commit(sequence);
+        applyCommitted();
+    }
+
+    // queries must not run at the same time as addCar
+    public CarService getCarService() {
+        return carService;
+    }
+
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    // starts a new log and writes all cars added before to snapshot in the background
+    public synchronized Future<?> compact() {
+
+        if (!compaction.isDone()) {
+            return compaction;
+        }
+
+        long snapshotGeneration = generation + 1;
+
+        // closing commits the whole log, so the snapshot has every car appended to it
+        log.close();
+        applyCommitted();
+        List<Car> cars = carService.stream().collect(Collectors.toList());
+        log = CarWriteAheadLog.open(file(directory, snapshotGeneration, "wal"), car -> {
+            throw new MyException(ExceptionCode.OTHER, "New write ahead log is not empty");
+        });
+        generation = snapshotGeneration;
+        loggedSinceCompaction = 0;
+
+        compaction = compactor.submit(() -> writeSnapshot(cars, snapshotGeneration));
+        return compaction;
+    }
+
+    @Override
+    public void close() {
+
+        Future<?> pendingCompaction;
+        synchronized (this) {
+            pendingCompaction = compaction;
+        }
+        // log and compactor are released even when the last compaction failed
+        try {
+            await(pendingCompaction);
+        } finally {
+            try {
+                compactor.shutdown();
+            } finally {
+                synchronized (this) {
+                    log.close();
+                }
+            }
+        }
+    }
+
+    // a commit makes durable all records appended before, also cars of other threads, they are added in log order
+    private synchronized void applyCommitted() {
+        while (!uncommitted.isEmpty() && uncommitted.peek().log.isCommitted(uncommitted.peek().sequence)) {
+            carService.addCar(uncommitted.poll().car);
+        }
+    }
+
+    private void logged(int count) {
+        loggedSinceCompaction += count;
+        if (loggedSinceCompaction >= compactionThreshold) {
+            compact();
+        }
+    }
+
+    private void writeSnapshot(List<Car> cars, long snapshotGeneration) {
+
+        try {
+            Path snapshot = file(directory, snapshotGeneration, "snapshot");
+            Path temporary = directory.resolve(snapshot.getFileName() + ".tmp");
+            new CarsSnapshotConverter(temporary.toString()).toSnapshot(cars);
+            Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE);
+
+            // from now on older files are not needed for recovery
+            for (String extension : List.of("snapshot", "wal")) {
+                for (long olderGeneration : generations(directory, extension)) {
+                    if (olderGeneration < snapshotGeneration) {
+                        Files.deleteIfExists(file(directory, olderGeneration, extension));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new MyException(ExceptionCode.SNAPSHOT, "Compaction failed: " + e.getMessage());
+        }
+    }
+
+    private static void await(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MyException(ExceptionCode.OTHER, "Compaction interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof MyException) {
+                throw (MyException) e.getCause();
+            }
+            throw new MyException(ExceptionCode.SNAPSHOT, "Compaction failed: " + e.getCause());
+        }
+    }
+
+    private static class LoggedCar {
+
+        private final CarWriteAheadLog log;
+        private final long sequence;
+        private final Car car;
+
+        private LoggedCar(CarWriteAheadLog log, long sequence, Car car) {
+            this.log = log;
+            this.sequence = sequence;
+            this.car = car;
+        }
+    }
+
+    private static Path file(Path directory, long generation, String extension) {
+        return directory.resolve("cars-" + generation + "." + extension);
+    }
+
+    // sorted generations of files with given extension
+    private static List<Long> generations(Path directory, String extension) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .map(file -> FILE_NAME.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .filter(matcher -> matcher.group(2).equals(extension))
+                    .map(matcher -> Long.parseLong(matcher.group(1)))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+}
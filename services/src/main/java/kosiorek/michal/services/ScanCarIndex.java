@@ -0,0 +1,168 @@
+package kosiorek.michal.services;
+
+import kosiorek.michal.model.Car;
+import kosiorek.michal.model.enums.Color;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.function.Predicate;
+
+// no index at all - every query is a scan over the store, used for stores which do not fit on heap
+class ScanCarIndex implements CarIndex {
+
+    private static final Color[] COLORS = Color.values();
+
+    private final CarStore carStore;
+
+    ScanCarIndex(CarStore carStore) {
+        this.carStore = carStore;
+    }
+
+    @Override
+    public boolean hasIndexes() {
+        return false;
+    }
+
+    @Override
+    public void add(Car car, int ordinal) {
+        // nothing to maintain
+    }
+
+    @Override
+    public int[] withPriceBetween(BigDecimal priceFrom, BigDecimal priceTo) {
+        return carStore.scanPriceBetween(priceFrom, priceTo);
+    }
+
+    @Override
+    public int[] withMileageAtLeast(int mileageFrom) {
+        return carStore.scanMileageAtLeast(mileageFrom);
+    }
+
+    @Override
+    public int[] withModel(String model) {
+        IntArrayList ordinals = new IntArrayList();
+        for (int i = 0; i < carStore.size(); i++) {
+            if (Objects.equals(model, carStore.getModel(i))) {
+                ordinals.add(i);
+            }
+        }
+        return ordinals.toArray();
+    }
+
+    @Override
+    public int[] withColor(Color color) {
+        IntArrayList ordinals = new IntArrayList();
+        for (int i = 0; i < carStore.size(); i++) {
+            if (color == carStore.getColor(i)) {
+                ordinals.add(i);
+            }
+        }
+        return ordinals.toArray();
+    }
+
+    @Override
+    public Map<Color, Long> countByColor() {
+
+        long[] counts = carStore.scanColorCounts();
+        Map<Color, Long> result = new EnumMap<>(Color.class);
+        for (Color color : COLORS) {
+            if (counts[color.ordinal()] > 0) {
+                result.put(color, counts[color.ordinal()]);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Integer> mostExpensiveByModel() {
+
+        Map<String, Integer> mostExpensive = new HashMap<>();
+        for (int i = 0; i < carStore.size(); i++) {
+            String model = carStore.getModel(i);
+            if (model == null || carStore.getPrice(i) == null) {
+                continue;
+            }
+            Integer current = mostExpensive.get(model);
+            if (current == null || carStore.comparePrices(i, current) > 0) {
+                mostExpensive.put(model, i);
+            }
+        }
+        return mostExpensive;
+    }
+
+    @Override
+    public Map<String, int[]> withComponents() {
+
+        Map<String, IntArrayList> postings = new HashMap<>();
+        for (int i = 0; i < carStore.size(); i++) {
+            List<String> components = carStore.getComponents(i);
+            if (components != null) {
+                for (String component : components) {
+                    IntArrayList posting = postings.computeIfAbsent(component, c -> new IntArrayList());
+                    if (posting.isEmpty() || posting.get(posting.size() - 1) != i) {
+                        posting.add(i);
+                    }
+                }
+            }
+        }
+
+        Map<String, int[]> result = new HashMap<>();
+        postings.forEach((component, posting) -> result.put(component, posting.toArray()));
+        return result;
+    }
+
+    @Override
+    public int[] withAllComponents(Collection<String> components) {
+        return scanComponents(carComponents -> carComponents.containsAll(components), components.isEmpty());
+    }
+
+    @Override
+    public int[] withAnyComponents(Collection<String> components) {
+        return scanComponents(carComponents -> !Collections.disjoint(carComponents, components), false);
+    }
+
+    // nothing is known without a scan, so every filter may match the whole store
+
+    @Override
+    public int countPriceBetween(BigDecimal priceFrom, BigDecimal priceTo, int max) {
+        return carStore.size();
+    }
+
+    @Override
+    public int countMileageAtLeast(int mileageFrom, int max) {
+        return carStore.size();
+    }
+
+    @Override
+    public int countModel(String model) {
+        return carStore.size();
+    }
+
+    @Override
+    public int countColor(Color color) {
+        return carStore.size();
+    }
+
+    @Override
+    public int countAllComponents(Collection<String> components) {
+        return carStore.size();
+    }
+
+    @Override
+    public int countAnyComponents(Collection<String> components, int max) {
+        return carStore.size();
+    }
+
+    private int[] scanComponents(Predicate<List<String>> predicate, boolean matchNull) {
+        IntArrayList ordinals = new IntArrayList();
+        for (int i = 0; i < carStore.size(); i++) {
+            List<String> components = carStore.getComponents(i);
+            if (components == null ? matchNull : predicate.test(components)) {
+                ordinals.add(i);
+            }
+        }
+        return ordinals.toArray();
+    }
+
+}
@@ -0,0 +1,218 @@
+package kosiorek.michal.services;
+
+import kosiorek.michal.exceptions.ExceptionCode;
+import kosiorek.michal.exceptions.MyException;
+import kosiorek.michal.model.Car;
+import kosiorek.michal.model.enums.Color;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+// immutable index made of segments - one tree index per range of ordinals, newer segments point to older ones,
+// so extending the index by a batch of cars indexes that batch and shares older segments
+//
+// segments are compacted like tiers of a log structured merge tree - a new segment is merged with every older one
+// which is at most twice as big, so every segment is more than twice as big as the next one, there are at most
+// log2(cars) segments and every car is indexed again only a logarithmic number of times
+class SegmentedCarIndex implements CarIndex {
+
+    private final SegmentedCarIndex previous;
+    private final int from;
+    // store of the newest segment, it has all cars of older segments too
+    private final CarStore carStore;
+    // all segments oldest first, shared by queries
+    private final TreeCarIndex[] segments;
+
+    private SegmentedCarIndex(SegmentedCarIndex previous, TreeCarIndex segment, int from, CarStore carStore) {
+        this.previous = previous;
+        this.from = from;
+        this.carStore = carStore;
+        this.segments = previous == null ? new TreeCarIndex[1] : Arrays.copyOf(previous.segments, previous.segments.length + 1);
+        this.segments[segments.length - 1] = segment;
+    }
+
+    // indexes cars of carStore from ordinal from on top of previous index (null for the first segment), together with
+    // older segments which are not more than twice as big as the new one
+    static SegmentedCarIndex extend(SegmentedCarIndex previous, CarStore carStore, int from) {
+
+        while (previous != null && previous.getSegmentSize() <= 2L * (carStore.size() - from)) {
+            from = previous.from;
+            previous = previous.previous;
+        }
+
+        TreeCarIndex segment = new TreeCarIndex(carStore);
+        for (int i = from; i < carStore.size(); i++) {
+            segment.add(carStore.get(i), i);
+        }
+        return new SegmentedCarIndex(previous, segment, from, carStore);
+    }
+
+    // number of cars in the newest segment
+    int getSegmentSize() {
+        return carStore.size() - from;
+    }
+
+    int getSegmentCount() {
+        return segments.length;
+    }
+
+    @Override
+    public boolean hasIndexes() {
+        return true;
+    }
+
+    @Override
+    public void add(Car car, int ordinal) {
+        throw new MyException(ExceptionCode.OTHER, "Segmented index is read only");
+    }
+
+    @Override
+    public int[] withPriceBetween(BigDecimal priceFrom, BigDecimal priceTo) {
+        return concat(segment -> segment.withPriceBetween(priceFrom, priceTo));
+    }
+
+    @Override
+    public int[] withMileageAtLeast(int mileageFrom) {
+        return concat(segment -> segment.withMileageAtLeast(mileageFrom));
+    }
+
+    @Override
+    public int[] withModel(String model) {
+        return concat(segment -> segment.withModel(model));
+    }
+
+    @Override
+    public int[] withColor(Color color) {
+        return concat(segment -> segment.withColor(color));
+    }
+
+    @Override
+    public Map<Color, Long> countByColor() {
+        Map<Color, Long> counts = new EnumMap<>(Color.class);
+        for (TreeCarIndex segment : segments) {
+            segment.countByColor().forEach((color, count) -> counts.merge(color, count, Long::sum));
+        }
+        return counts;
+    }
+
+    // segments are in ordinal order, so replacing only by a more expensive car keeps the first of the most expensive
+    @Override
+    public Map<String, Integer> mostExpensiveByModel() {
+        Map<String, Integer> mostExpensive = new HashMap<>();
+        for (TreeCarIndex segment : segments) {
+            segment.mostExpensiveByModel().forEach((model, ordinal) -> {
+                Integer current = mostExpensive.get(model);
+                if (current == null || carStore.comparePrices(ordinal, current) > 0) {
+                    mostExpensive.put(model, ordinal);
+                }
+            });
+        }
+        return mostExpensive;
+    }
+
+    @Override
+    public Map<String, int[]> withComponents() {
+
+        Map<String, List<int[]>> postingsByComponent = new HashMap<>();
+        for (TreeCarIndex segment : segments) {
+            segment.withComponents().forEach((component, posting) -> postingsByComponent.computeIfAbsent(component, c -> new ArrayList<>()).add(posting));
+        }
+
+        Map<String, int[]> result = new HashMap<>();
+        postingsByComponent.forEach((component, postings) -> result.put(component, concat(postings)));
+        return result;
+    }
+
+    @Override
+    public int[] withAllComponents(Collection<String> components) {
+
+        // every segment would return all cars of its store, not only its own
+        if (components.isEmpty()) {
+            int[] all = new int[carStore.size()];
+            Arrays.setAll(all, i -> i);
+            return all;
+        }
+
+        return concat(segment -> segment.withAllComponents(components));
+    }
+
+    @Override
+    public int[] withAnyComponents(Collection<String> components) {
+        return concat(segment -> segment.withAnyComponents(components));
+    }
+
+    @Override
+    public int countPriceBetween(BigDecimal priceFrom, BigDecimal priceTo, int max) {
+        return sum(segment -> segment.countPriceBetween(priceFrom, priceTo, max), max);
+    }
+
+    @Override
+    public int countMileageAtLeast(int mileageFrom, int max) {
+        return sum(segment -> segment.countMileageAtLeast(mileageFrom, max), max);
+    }
+
+    @Override
+    public int countModel(String model) {
+        return sum(segment -> segment.countModel(model), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int countColor(Color color) {
+        return sum(segment -> segment.countColor(color), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int countAllComponents(Collection<String> components) {
+
+        if (components.isEmpty()) {
+            return carStore.size();
+        }
+
+        return sum(segment -> segment.countAllComponents(components), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int countAnyComponents(Collection<String> components, int max) {
+        return sum(segment -> segment.countAnyComponents(components, max), max);
+    }
+
+    // segments cover consecutive ordinal ranges, so sorted results of segments joined in order stay sorted
+    private int[] concat(Function<TreeCarIndex, int[]> query) {
+        List<int[]> parts = new ArrayList<>(segments.length);
+        for (TreeCarIndex segment : segments) {
+            parts.add(query.apply(segment));
+        }
+        return concat(parts);
+    }
+
+    private int sum(ToIntFunction<TreeCarIndex> count, int max) {
+
+        int sum = 0;
+        for (TreeCarIndex segment : segments) {
+            sum += count.applyAsInt(segment);
+            if (sum > max) {
+                break;
+            }
+        }
+        return sum;
+    }
+
+    private static int[] concat(List<int[]> parts) {
+
+        int size = 0;
+        for (int[] part : parts) {
+            size += part.length;
+        }
+
+        int[] ordinals = new int[size];
+        int position = 0;
+        for (int[] part : parts) {
+            System.arraycopy(part, 0, ordinals, position, part.length);
+            position += part.length;
+        }
+        return ordinals;
+    }
+
+}
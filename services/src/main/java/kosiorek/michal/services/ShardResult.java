@@ -0,0 +1,52 @@
+package kosiorek.michal.services;
+
+// outcome of loading one shard (e.g. one file) - a failed shard adds no cars, other shards are loaded anyway
+public class ShardResult {
+
+    private final String name;
+    private final long validCount;
+    private final long processedCount;
+    private final long elapsedNanos;
+    private final RuntimeException error;
+
+    public ShardResult(String name, long validCount, long processedCount, long elapsedNanos, RuntimeException error) {
+        this.name = name;
+        this.validCount = validCount;
+        this.processedCount = processedCount;
+        this.elapsedNanos = elapsedNanos;
+        this.error = error;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getValidCount() {
+        return validCount;
+    }
+
+    public long getProcessedCount() {
+        return processedCount;
+    }
+
+    // parsing and validation on a worker, without waiting for earlier shards
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public boolean isFailed() {
+        return error != null;
+    }
+
+    // null when shard was loaded
+    public RuntimeException getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return name + " - " + (isFailed() ? "FAILED: " + error.getClass().getSimpleName() : "PROCESSED: " + processedCount + ", VALID: " + validCount)
+                + ", MS: " + elapsedNanos / 1_000_000;
+    }
+
+}
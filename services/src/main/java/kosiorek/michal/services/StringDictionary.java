@@ -0,0 +1,121 @@
+package kosiorek.michal.services;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// canonical instances of repeated strings (models, components) with stable integer ids, safe to use from many threads -
+// when maxSize strings are known new ones are returned unchanged, the dictionary never holds more than maxSize strings
+public class StringDictionary {
+
+    public static final int DEFAULT_MAX_SIZE = 1 << 20;
+
+    private static final StringDictionary SHARED = new StringDictionary(DEFAULT_MAX_SIZE);
+
+    private final int maxSize;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+
+    public StringDictionary(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    // one dictionary for the whole process - it keeps its strings forever, so only for loads which should share them
+    public static StringDictionary shared() {
+        return SHARED;
+    }
+
+    // canonical instance equal to value, value itself when it is new and dictionary is full
+    public String intern(String value) {
+
+        if (value == null) {
+            return null;
+        }
+
+        Entry entry = entries.get(value);
+        if (entry == null && nextId.get() < maxSize) {
+            // null when another thread took the last free id meanwhile - nothing is added then
+            entry = entries.computeIfAbsent(value, this::newEntry);
+        }
+
+        if (entry == null) {
+            misses.increment();
+            return value;
+        }
+
+        if (entry.value != value) {
+            hits.increment();
+            bytesSaved.add(sizeOf(value));
+        }
+        return entry.value;
+    }
+
+    // id of already known value, -1 otherwise
+    public int idOf(String value) {
+        Entry entry = value == null ? null : entries.get(value);
+        return entry == null ? -1 : entry.id;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    // values replaced with their canonical instance
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    // values not kept because dictionary was full
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    // estimated heap size of duplicate strings which could be garbage collected thanks to the dictionary
+    public long getBytesSaved() {
+        return bytesSaved.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "STRINGS: " + size() + ", HITS: " + getHitCount() + ", MISSES: " + getMissCount() + ", BYTES SAVED: " + getBytesSaved();
+    }
+
+    // ids are reserved atomically, so concurrent threads can not push the dictionary past maxSize
+    private Entry newEntry(String value) {
+        int id = nextId.getAndUpdate(next -> next < maxSize ? next + 1 : next);
+        return id < maxSize ? new Entry(value, id) : null;
+    }
+
+    // compact string - object header and fields (24 bytes) plus byte array (16 bytes header, one or two bytes per char)
+    private static long sizeOf(String value) {
+
+        int bytesPerChar = 1;
+        for (int i = 0; i < value.length() && bytesPerChar == 1; i++) {
+            if (value.charAt(i) > 0xFF) {
+                bytesPerChar = 2;
+            }
+        }
+
+        return 24 + ((16L + (long) bytesPerChar * value.length() + 7) & ~7L);
+    }
+
+    private static class Entry {
+
+        private final String value;
+        private final int id;
+
+        private Entry(String value, int id) {
+            this.value = value;
+            this.id = id;
+        }
+    }
+
+}
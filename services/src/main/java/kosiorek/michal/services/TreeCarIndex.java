@@ -0,0 +1,284 @@
+package kosiorek.michal.services;
+
+import kosiorek.michal.model.Car;
+import kosiorek.michal.model.enums.Color;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+
+// secondary indexes over car ordinals (positions in car store), kept up to date on every insert
+class TreeCarIndex implements CarIndex {
+
+    private final CarStore carStore;
+    // with fixed-point store prices are keyed by minor units, priceIndex keeps only prices without exact minor units
+    private final FixedPointCarStore fixedPointStore;
+
+    private final NavigableMap<BigDecimal, IntArrayList> priceIndex = new TreeMap<>();
+    private final NavigableMap<Long, IntArrayList> minorUnitPriceIndex = new TreeMap<>();
+    private final NavigableMap<Integer, IntArrayList> mileageIndex = new TreeMap<>();
+    private final Map<String, IntArrayList> modelIndex = new HashMap<>();
+    private final Map<Color, IntArrayList> colorIndex = new EnumMap<>(Color.class);
+    // inverted index, every posting list is sorted because ordinals only grow
+    private final Map<String, IntArrayList> componentIndex = new HashMap<>();
+
+    TreeCarIndex(CarStore carStore) {
+        this.carStore = carStore;
+        this.fixedPointStore = carStore instanceof FixedPointCarStore ? (FixedPointCarStore) carStore : null;
+    }
+
+    @Override
+    public boolean hasIndexes() {
+        return true;
+    }
+
+    @Override
+    public void add(Car car, int ordinal) {
+
+        // cars without a value are simply not reachable through that index
+        if (fixedPointStore != null && fixedPointStore.hasMinorUnitPrice(ordinal)) {
+            minorUnitPriceIndex.computeIfAbsent(fixedPointStore.getMinorUnitPrice(ordinal), price -> new IntArrayList()).add(ordinal);
+        } else if (car.getPrice() != null) {
+            priceIndex.computeIfAbsent(car.getPrice(), price -> new IntArrayList()).add(ordinal);
+        }
+        mileageIndex.computeIfAbsent(car.getMileage(), mileage -> new IntArrayList()).add(ordinal);
+        if (car.getModel() != null) {
+            modelIndex.computeIfAbsent(car.getModel(), model -> new IntArrayList()).add(ordinal);
+        }
+        if (car.getColor() != null) {
+            colorIndex.computeIfAbsent(car.getColor(), color -> new IntArrayList()).add(ordinal);
+        }
+        if (car.getComponents() != null) {
+            for (String component : car.getComponents()) {
+                IntArrayList posting = componentIndex.computeIfAbsent(component, c -> new IntArrayList());
+                // the same component listed twice in one car is stored once
+                if (posting.isEmpty() || posting.get(posting.size() - 1) != ordinal) {
+                    posting.add(ordinal);
+                }
+            }
+        }
+    }
+
+    @Override
+    public int[] withPriceBetween(BigDecimal priceFrom, BigDecimal priceTo) {
+        List<IntArrayList> postings = new ArrayList<>(minorUnitPricesBetween(priceFrom, priceTo));
+        postings.addAll(priceIndex.subMap(priceFrom, true, priceTo, true).values());
+        return collect(postings);
+    }
+
+    @Override
+    public int[] withMileageAtLeast(int mileageFrom) {
+        return collect(mileageIndex.tailMap(mileageFrom, true).values());
+    }
+
+    @Override
+    public int[] withModel(String model) {
+        IntArrayList posting = modelIndex.get(model);
+        return posting == null ? new int[0] : posting.toArray();
+    }
+
+    @Override
+    public int[] withColor(Color color) {
+        IntArrayList posting = colorIndex.get(color);
+        return posting == null ? new int[0] : posting.toArray();
+    }
+
+    @Override
+    public Map<Color, Long> countByColor() {
+        Map<Color, Long> counts = new EnumMap<>(Color.class);
+        colorIndex.forEach((color, posting) -> counts.put(color, (long) posting.size()));
+        return counts;
+    }
+
+    @Override
+    public Map<String, Integer> mostExpensiveByModel() {
+
+        Map<String, Integer> mostExpensive = new HashMap<>();
+
+        modelIndex.forEach((model, ordinals) -> {
+            int mostExpensiveOrdinal = -1;
+            for (int i = 0; i < ordinals.size(); i++) {
+                int ordinal = ordinals.get(i);
+                if (carStore.getPrice(ordinal) != null && (mostExpensiveOrdinal < 0 || carStore.comparePrices(ordinal, mostExpensiveOrdinal) > 0)) {
+                    mostExpensiveOrdinal = ordinal;
+                }
+            }
+            if (mostExpensiveOrdinal >= 0) {
+                mostExpensive.put(model, mostExpensiveOrdinal);
+            }
+        });
+
+        return mostExpensive;
+    }
+
+    @Override
+    public Map<String, int[]> withComponents() {
+        Map<String, int[]> postings = new HashMap<>();
+        componentIndex.forEach((component, posting) -> postings.put(component, posting.toArray()));
+        return postings;
+    }
+
+    // posting lists are intersected from the shortest one
+    @Override
+    public int[] withAllComponents(Collection<String> components) {
+
+        if (components.isEmpty()) {
+            int[] all = new int[carStore.size()];
+            Arrays.setAll(all, i -> i);
+            return all;
+        }
+
+        List<IntArrayList> postings = new ArrayList<>();
+        for (String component : new HashSet<>(components)) {
+            IntArrayList posting = componentIndex.get(component);
+            if (posting == null) {
+                return new int[0];
+            }
+            postings.add(posting);
+        }
+        postings.sort(Comparator.comparingInt(IntArrayList::size));
+
+        int[] result = postings.get(0).toArray();
+        int resultSize = result.length;
+        for (int p = 1; p < postings.size() && resultSize > 0; p++) {
+            resultSize = intersect(result, resultSize, postings.get(p));
+        }
+
+        return Arrays.copyOf(result, resultSize);
+    }
+
+    @Override
+    public int[] withAnyComponents(Collection<String> components) {
+
+        List<IntArrayList> postings = new ArrayList<>();
+        for (String component : new HashSet<>(components)) {
+            IntArrayList posting = componentIndex.get(component);
+            if (posting != null) {
+                postings.add(posting);
+            }
+        }
+
+        int[] ordinals = collect(postings);
+        int size = 0;
+        for (int i = 0; i < ordinals.length; i++) {
+            if (size == 0 || ordinals[size - 1] != ordinals[i]) {
+                ordinals[size++] = ordinals[i];
+            }
+        }
+
+        return Arrays.copyOf(ordinals, size);
+    }
+
+    @Override
+    public int countPriceBetween(BigDecimal priceFrom, BigDecimal priceTo, int max) {
+        int count = count(minorUnitPricesBetween(priceFrom, priceTo), max);
+        return count > max ? count : count + count(priceIndex.subMap(priceFrom, true, priceTo, true).values(), max - count);
+    }
+
+    @Override
+    public int countMileageAtLeast(int mileageFrom, int max) {
+        return count(mileageIndex.tailMap(mileageFrom, true).values(), max);
+    }
+
+    @Override
+    public int countModel(String model) {
+        IntArrayList posting = modelIndex.get(model);
+        return posting == null ? 0 : posting.size();
+    }
+
+    @Override
+    public int countColor(Color color) {
+        IntArrayList posting = colorIndex.get(color);
+        return posting == null ? 0 : posting.size();
+    }
+
+    // size of the shortest posting
+    @Override
+    public int countAllComponents(Collection<String> components) {
+
+        int count = carStore.size();
+        for (String component : components) {
+            IntArrayList posting = componentIndex.get(component);
+            count = Math.min(count, posting == null ? 0 : posting.size());
+        }
+        return count;
+    }
+
+    @Override
+    public int countAnyComponents(Collection<String> components, int max) {
+
+        List<IntArrayList> postings = new ArrayList<>();
+        for (String component : new HashSet<>(components)) {
+            IntArrayList posting = componentIndex.get(component);
+            if (posting != null) {
+                postings.add(posting);
+            }
+        }
+        return count(postings, max);
+    }
+
+    private static int count(Collection<IntArrayList> postings, int max) {
+
+        int count = 0;
+        for (IntArrayList posting : postings) {
+            count += posting.size();
+            if (count > max) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    // postings of fixed-point prices in [priceFrom, priceTo], bounds are converted to minor units once and every
+    // comparison in the tree is a long one
+    private Collection<IntArrayList> minorUnitPricesBetween(BigDecimal priceFrom, BigDecimal priceTo) {
+
+        if (fixedPointStore == null) {
+            return List.of();
+        }
+
+        long from = fixedPointStore.toMinorUnits(priceFrom, RoundingMode.CEILING);
+        long to = fixedPointStore.toMinorUnits(priceTo, RoundingMode.FLOOR);
+        // e.g. 100.001 - 100.009 with scale 2 has no minor unit price in it
+        return from > to ? List.of() : minorUnitPriceIndex.subMap(from, true, to, true).values();
+    }
+
+    // keeps in result only ordinals present in posting, both are sorted so it is a single merge pass
+    private static int intersect(int[] result, int resultSize, IntArrayList posting) {
+
+        int size = 0;
+        int p = 0;
+        for (int i = 0; i < resultSize && p < posting.size(); i++) {
+            while (p < posting.size() && posting.get(p) < result[i]) {
+                p++;
+            }
+            if (p < posting.size() && posting.get(p) == result[i]) {
+                result[size++] = result[i];
+            }
+        }
+
+        return size;
+    }
+
+    private static int[] collect(Collection<IntArrayList> postings) {
+
+        int size = 0;
+        for (IntArrayList posting : postings) {
+            size += posting.size();
+        }
+
+        int[] ordinals = new int[size];
+        int position = 0;
+        for (IntArrayList posting : postings) {
+            for (int i = 0; i < posting.size(); i++) {
+                ordinals[position++] = posting.get(i);
+            }
+        }
+
+        // results are returned in the order cars were added, same as a full scan
+        Arrays.sort(ordinals);
+        return ordinals;
+    }
+
+}
@@ -0,0 +1,175 @@
+package kosiorek.michal.services;
+
+import kosiorek.michal.exceptions.ExceptionCode;
+import kosiorek.michal.exceptions.MyException;
+import kosiorek.michal.validators.CarValidator;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.IntFunction;
+
+// invalid cars of one ingestion kept compactly - car number and bitmask of broken rules (CarValidator.failedRules),
+// count of cars per broken rule and full messages only for the first cars
+public class ValidationReport {
+
+    public static final int DEFAULT_SAMPLE_SIZE = 100;
+
+    private static final List<String> FAILURE_NAMES = CarValidator.getFailureNames();
+    private static final Executor WRITER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "validation-report-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int[] carNumbers;
+    private final int[] failedRules;
+    private final long[] failureCounts;
+    private final Map<Integer, Map<String, String>> samples;
+
+    private ValidationReport(Builder builder) {
+        this.carNumbers = builder.carNumbers.toArray();
+        this.failedRules = builder.failedRules.toArray();
+        this.failureCounts = builder.failureCounts.clone();
+        this.samples = Collections.unmodifiableMap(new LinkedHashMap<>(builder.samples));
+    }
+
+    public static ValidationReport empty() {
+        return new Builder(0).build();
+    }
+
+    public int getInvalidCount() {
+        return carNumbers.length;
+    }
+
+    public boolean isEmpty() {
+        return carNumbers.length == 0;
+    }
+
+    // numbers (starting from 1) of invalid cars in input order
+    public int[] getCarNumbers() {
+        return carNumbers.clone();
+    }
+
+    // names of rules broken by given car, empty for valid car
+    public Set<String> getFailedRules(int carNumber) {
+        int position = Arrays.binarySearch(carNumbers, carNumber);
+        return position < 0 ? Collections.emptySet() : names(failedRules[position]);
+    }
+
+    // every invalid car with its broken rules, built on request
+    public Map<Integer, Set<String>> getFailedRulesByCar() {
+        Map<Integer, Set<String>> failedRulesByCar = new LinkedHashMap<>();
+        for (int i = 0; i < carNumbers.length; i++) {
+            failedRulesByCar.put(carNumbers[i], names(failedRules[i]));
+        }
+        return failedRulesByCar;
+    }
+
+    // rule -> number of cars which broke it
+    public Map<String, Long> getFailureCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < FAILURE_NAMES.size(); i++) {
+            if (failureCounts[i] > 0) {
+                counts.put(FAILURE_NAMES.get(i), failureCounts[i]);
+            }
+        }
+        return counts;
+    }
+
+    // full messages of the first invalid cars
+    public Map<Integer, Map<String, String>> getSamples() {
+        return samples;
+    }
+
+    // writes the whole report in the background, so loading does not wait for disk
+    public CompletableFuture<Void> writeAsync(String filename) {
+        return CompletableFuture.runAsync(() -> write(filename), WRITER);
+    }
+
+    public void write(String filename) {
+
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(filename), StandardCharsets.UTF_8)) {
+            writer.write(toString());
+            writer.newLine();
+            for (int i = 0; i < carNumbers.length; i++) {
+                writer.write("CAR NO. " + carNumbers[i] + " " + String.join(", ", names(failedRules[i])));
+                writer.newLine();
+            }
+            for (Map.Entry<Integer, Map<String, String>> sample : samples.entrySet()) {
+                writer.write("CAR NO. " + sample.getKey() + " " + sample.getValue());
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            throw new MyException(ExceptionCode.VALIDATION, "Validation report can not be written: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "INVALID CARS: " + carNumbers.length + ", BROKEN RULES: " + getFailureCounts();
+    }
+
+    private static Set<String> names(int failed) {
+        Set<String> names = new LinkedHashSet<>();
+        for (int i = 0; i < FAILURE_NAMES.size(); i++) {
+            if ((failed & 1 << i) != 0) {
+                names.add(FAILURE_NAMES.get(i));
+            }
+        }
+        return names;
+    }
+
+    // collects invalid cars in input order, not thread safe - every chunk has its own builder
+    static class Builder {
+
+        private final int sampleSize;
+        private final IntArrayList carNumbers = new IntArrayList();
+        private final IntArrayList failedRules = new IntArrayList();
+        private final long[] failureCounts = new long[FAILURE_NAMES.size()];
+        private final Map<Integer, Map<String, String>> samples = new LinkedHashMap<>();
+
+        Builder(int sampleSize) {
+            this.sampleSize = sampleSize;
+        }
+
+        boolean needsSample() {
+            return samples.size() < sampleSize;
+        }
+
+        // messages can be null when sample is not needed
+        void add(int carNumber, int failed, Map<String, String> messages) {
+            carNumbers.add(carNumber);
+            failedRules.add(failed);
+            for (int i = 0; i < failureCounts.length; i++) {
+                if ((failed & 1 << i) != 0) {
+                    failureCounts[i]++;
+                }
+            }
+            if (messages != null && needsSample()) {
+                samples.put(carNumber, messages);
+            }
+        }
+
+        // appends cars of the next chunk, their numbers are shifted by carNumberShift - messages of i-th invalid car
+        // of the chunk are asked for only while this report still needs samples
+        void merge(Builder chunk, int carNumberShift, IntFunction<Map<String, String>> messages) {
+            for (int i = 0; i < chunk.carNumbers.size(); i++) {
+                int carNumber = chunk.carNumbers.get(i) + carNumberShift;
+                add(carNumber, chunk.failedRules.get(i), needsSample() ? messages.apply(i) : null);
+            }
+        }
+
+        ValidationReport build() {
+            return new ValidationReport(this);
+        }
+    }
+
+}
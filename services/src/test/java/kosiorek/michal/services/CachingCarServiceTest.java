@@ -0,0 +1,92 @@
+package kosiorek.michal.services;
+
+import kosiorek.michal.model.Car;
+import kosiorek.michal.model.enums.Color;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class CachingCarServiceTest {
+
+    private CachingCarService cachingCarService;
+
+    @BeforeEach
+    public void init() {
+        cachingCarService = new CachingCarService(new CarService("testcars4.json"), 2);
+    }
+
+    @Test
+    @DisplayName("Check if repeated query is answered from cache until a car is added")
+    public void test1() {
+
+        // WHEN
+        Map<Color, Long> first = cachingCarService.groupByColorAndCount();
+        Map<Color, Long> second = cachingCarService.groupByColorAndCount();
+        cachingCarService.addCar(Car.builder().model("AUDI").price(BigDecimal.TEN).color(Color.GREEN).mileage(1).components(List.of("ABS")).build());
+        Map<Color, Long> third = cachingCarService.groupByColorAndCount();
+
+        // THEN
+        Assertions.assertSame(first, second);
+        Assertions.assertEquals(1L, cachingCarService.getHitCount());
+        Assertions.assertEquals(2L, cachingCarService.getMissCount());
+        Assertions.assertEquals(Long.valueOf(1), third.get(Color.GREEN));
+        Assertions.assertEquals(cachingCarService.getCarService().groupByColorAndCount(), third);
+    }
+
+    @Test
+    @DisplayName("Check if queries with different arguments are cached separately and least recently used is evicted")
+    public void test2() {
+
+        // WHEN
+        List<Car> cheap = cachingCarService.getCarsWithPriceBetween(BigDecimal.valueOf(100), BigDecimal.valueOf(120));
+        cachingCarService.getCarsWithPriceBetween(BigDecimal.valueOf(100), BigDecimal.valueOf(200));
+        cachingCarService.getCarsWithPriceBetween(BigDecimal.valueOf(100), BigDecimal.valueOf(120));
+        cachingCarService.groupByModelAndMostExpensiveCar();
+        cachingCarService.getCarsWithPriceBetween(BigDecimal.valueOf(100), BigDecimal.valueOf(200));
+
+        // THEN
+        Assertions.assertEquals(cachingCarService.getCarService().getCarsWithPriceBetween(BigDecimal.valueOf(100), BigDecimal.valueOf(120)), cheap);
+        Assertions.assertEquals(1L, cachingCarService.getHitCount());
+        Assertions.assertEquals(4L, cachingCarService.getMissCount());
+        Assertions.assertEquals(2, cachingCarService.size());
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> cheap.add(null));
+    }
+
+    @Test
+    @DisplayName("Check if concurrent calls with the same key compute the result once")
+    public void test3() throws Exception {
+
+        //GIVEN
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Map<Color, Long>>> results = new ArrayList<>();
+
+        // WHEN
+        for (int i = 0; i < 16; i++) {
+            results.add(executorService.submit(() -> {
+                start.await();
+                return cachingCarService.groupByColorAndCount();
+            }));
+        }
+        start.countDown();
+        Set<Map<Color, Long>> distinctResults = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Future<Map<Color, Long>> result : results) {
+            distinctResults.add(result.get());
+        }
+        executorService.shutdown();
+
+        // THEN
+        Assertions.assertEquals(1, distinctResults.size());
+        Assertions.assertEquals(Long.valueOf(1), Long.valueOf(cachingCarService.getMissCount()));
+        Assertions.assertEquals(Long.valueOf(15), Long.valueOf(cachingCarService.getHitCount()));
+    }
+
+}
@@ -0,0 +1,101 @@
+package kosiorek.michal.services;
+
+import kosiorek.michal.model.Car;
+import kosiorek.michal.model.enums.Color;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+
+public class CarBitmapIndexTest {
+
+    // RARE only in first and last car, COMMON in every second car, LATE only in the second half, EARLY in the first 5000
+    private List<Car> generateCars(int count) {
+        List<Car> cars = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            List<String> components = new ArrayList<>();
+            if (i == 0 || i == count - 1) {
+                components.add("RARE");
+            }
+            if (i % 2 == 0) {
+                components.add("COMMON");
+            }
+            if (i >= count / 2) {
+                components.add("LATE");
+            }
+            if (i < 5000) {
+                components.add("EARLY");
+            }
+            cars.add(Car.builder().model("BMW").price(BigDecimal.TEN).color(Color.values()[i % Color.values().length]).mileage(i).components(components).build());
+        }
+        return cars;
+    }
+
+    @Test
+    @DisplayName("Check if rare components keep sorted ordinals, frequent ones become bitmaps and go back when they get rare")
+    public void test1() {
+
+        //GIVEN
+        List<Car> cars = generateCars(100_000);
+        CarBitmapIndex index = new CarBitmapIndex();
+
+        // WHEN
+        for (int i = 0; i < cars.size(); i++) {
+            index.add(cars.get(i), i);
+        }
+
+        // THEN
+        Assertions.assertTrue(index.isSparse("RARE"));
+        Assertions.assertFalse(index.isSparse("COMMON"));
+        Assertions.assertFalse(index.isSparse("LATE"));
+        Assertions.assertFalse(index.isSparse("EARLY"));
+
+        // WHEN
+        index.add(Car.builder().model("BMW").color(Color.RED).components(List.of("EARLY")).build(), 10_000_000);
+
+        // THEN
+        Assertions.assertTrue(index.isSparse("EARLY"));
+        BitSet early = index.match(null, List.of("EARLY"), null, null);
+        Assertions.assertEquals(5001, early.cardinality());
+        Assertions.assertTrue(early.get(4999));
+        Assertions.assertTrue(early.get(10_000_000));
+    }
+
+    @Test
+    @DisplayName("Check if bitmap predicates and color counts give the same cars as checking every car")
+    public void test2() {
+
+        //GIVEN
+        List<Car> cars = generateCars(100_000);
+        CarBitmapIndex index = new CarBitmapIndex();
+        for (int i = 0; i < cars.size(); i++) {
+            index.add(cars.get(i), i);
+        }
+
+        // WHEN
+        BitSet matching = index.match(Color.BLACK, List.of("COMMON"), List.of(Set.of("RARE", "LATE")), List.of("RARE"));
+        long[] counts = index.colorCounts(index.matchWords(null, List.of("RARE"), null, null));
+
+        // THEN
+        BitSet expected = new BitSet();
+        long[] expectedCounts = new long[Color.values().length];
+        for (int i = 0; i < cars.size(); i++) {
+            List<String> components = cars.get(i).getComponents();
+            if (cars.get(i).getColor() == Color.BLACK && components.contains("COMMON") && components.contains("LATE") && !components.contains("RARE")) {
+                expected.set(i);
+            }
+            if (components.contains("RARE")) {
+                expectedCounts[cars.get(i).getColor().ordinal()]++;
+            }
+        }
+        Assertions.assertEquals(expected, matching);
+        Assertions.assertEquals(Arrays.toString(expectedCounts), Arrays.toString(counts));
+    }
+
+}
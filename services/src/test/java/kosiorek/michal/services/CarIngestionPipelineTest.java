@@ -0,0 +1,279 @@
+package kosiorek.michal.services;
+
+import kosiorek.michal.converters.CarsJsonConverter;
+import kosiorek.michal.converters.CarsNdjsonConverter;
+import kosiorek.michal.exceptions.ExceptionCode;
+import kosiorek.michal.exceptions.MyException;
+import kosiorek.michal.model.Car;
+import kosiorek.michal.model.enums.Color;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public class CarIngestionPipelineTest {
+
+    private List<Car> generateCars(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> Car.builder()
+                        .model(i % 7 == 0 ? "bmw" + i : "BMW")
+                        .color(Color.values()[i % Color.values().length])
+                        .price(BigDecimal.valueOf(100 + i))
+                        .mileage(i)
+                        .components(List.of("ABS"))
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    @DisplayName("Check if parallel ingestion keeps input order of cars and errors")
+    public void test1() {
+
+        //GIVEN
+        List<Car> cars = generateCars(1000);
+        CarIngestionPipeline pipeline = new CarIngestionPipeline(4, 16);
+
+        // WHEN
+        List<Car> validCars = new ArrayList<>();
+        IngestionResult result = pipeline.ingest(cars.stream(), validCars::add);
+
+        // THEN
+        List<Car> expectedCars = cars.stream().filter(car -> car.getModel().equals("BMW")).collect(Collectors.toList());
+        List<Integer> expectedErrors = IntStream.range(0, 1000).filter(i -> i % 7 == 0).map(i -> i + 1).boxed().collect(Collectors.toList());
+
+        Assertions.assertEquals(expectedCars, validCars);
+        Assertions.assertEquals(expectedErrors, List.copyOf(result.getFailedRulesByCar().keySet()));
+        Assertions.assertEquals(1000L, result.getProcessedCount());
+    }
+
+    @Test
+    @DisplayName("Check if parallel and sequential ingestion give the same result")
+    public void test2() {
+
+        //GIVEN
+        List<Car> cars = generateCars(500);
+
+        // WHEN
+        List<Car> sequentialCars = new ArrayList<>();
+        List<Car> parallelCars = new ArrayList<>();
+        IngestionResult sequential = CarIngestionPipeline.sequential().ingest(cars.stream(), sequentialCars::add);
+        IngestionResult parallel = new CarIngestionPipeline(3, 7).ingest(cars.stream(), parallelCars::add);
+
+        // THEN
+        Assertions.assertEquals(sequentialCars, parallelCars);
+        Assertions.assertEquals(sequential.getFailedRulesByCar(), parallel.getFailedRulesByCar());
+    }
+
+    @Test
+    @DisplayName("Check if car service loaded with parallel pipeline works")
+    public void test3() {
+
+        // WHEN
+        CarService carService = new CarService("testcars4.json", new CarIngestionPipeline(2, 1));
+
+        // THEN
+        Assertions.assertEquals(4L, carService.getIngestionResult().getProcessedCount());
+        Assertions.assertEquals(new CarService("testcars4.json").toString(), carService.toString());
+    }
+
+    @Test
+    @DisplayName("Check if ndjson ranges parsed in parallel keep input order of cars and errors")
+    public void test4() throws Exception {
+
+        //GIVEN
+        File ndjson = File.createTempFile("cars", ".ndjson");
+        ndjson.deleteOnExit();
+        List<Car> cars = generateCars(1000);
+        CarsNdjsonConverter converter = new CarsNdjsonConverter(ndjson.getAbsolutePath());
+        converter.toNdjson(cars.stream());
+
+        long[] boundaries = converter.split(1000);
+        List<Supplier<Stream<Car>>> ranges = new ArrayList<>();
+        for (int i = 0; i < boundaries.length - 1; i++) {
+            long from = boundaries[i];
+            long to = boundaries[i + 1];
+            ranges.add(() -> converter.streamRange(from, to));
+        }
+
+        // WHEN
+        List<Car> expectedCars = new ArrayList<>();
+        List<Car> validCars = new ArrayList<>();
+        IngestionResult expected = CarIngestionPipeline.sequential().ingest(cars.stream(), expectedCars::add);
+        IngestionResult result = new CarIngestionPipeline(4, 16).ingest(ranges, validCars::add);
+
+        // THEN
+        Assertions.assertTrue(ranges.size() > 10);
+        Assertions.assertEquals(expectedCars, validCars);
+        Assertions.assertEquals(expected.getFailedRulesByCar(), result.getFailedRulesByCar());
+        Assertions.assertEquals(1000L, result.getProcessedCount());
+    }
+
+    @Test
+    @DisplayName("Check if car service exported to ndjson is loaded back unchanged")
+    public void test5() throws Exception {
+
+        //GIVEN
+        File ndjson = File.createTempFile("cars", ".ndjson");
+        ndjson.deleteOnExit();
+        CarService carService = new CarService("testcars4.json");
+
+        // WHEN
+        carService.exportToNdjson(ndjson.getAbsolutePath());
+        CarService loaded = CarService.fromNdjson(ndjson.getAbsolutePath(), CarIngestionPipeline.parallel());
+
+        // THEN
+        Assertions.assertEquals(carService.toString(), loaded.toString());
+        Assertions.assertEquals(carService.toString(), new CarsNdjsonConverter(ndjson.getAbsolutePath()).streamFromNdjson().map(Car::toString).collect(Collectors.joining("\n")));
+    }
+
+    @Test
+    @DisplayName("Check if validation report counts broken rules and keeps only a sample of messages")
+    public void test6() throws Exception {
+
+        //GIVEN
+        List<Car> cars = generateCars(1000);
+        File reportFile = File.createTempFile("validation", ".txt");
+        reportFile.deleteOnExit();
+
+        // WHEN
+        IngestionResult result = new CarIngestionPipeline(4, 16).ingest(cars.stream(), car -> { });
+        ValidationReport report = result.getValidationReport();
+        report.writeAsync(reportFile.getAbsolutePath()).get();
+
+        // THEN
+        Assertions.assertEquals(143, report.getInvalidCount());
+        Assertions.assertEquals(Map.of("model", 143L), report.getFailureCounts());
+        Assertions.assertEquals(Set.of("model"), report.getFailedRules(8));
+        Assertions.assertTrue(report.getFailedRules(2).isEmpty());
+        Assertions.assertEquals(ValidationReport.DEFAULT_SAMPLE_SIZE, report.getSamples().size());
+        Assertions.assertEquals("not valid: bmw0", report.getSamples().get(1).get("model"));
+        Assertions.assertEquals(1 + 143 + ValidationReport.DEFAULT_SAMPLE_SIZE, Files.readAllLines(reportFile.toPath()).size());
+    }
+
+    @Test
+    @DisplayName("Check if dictionary stage makes loaded cars share strings and stays bounded")
+    public void test7() {
+
+        //GIVEN
+        StringDictionary dictionary = new StringDictionary(3);
+        List<Car> validCars = new ArrayList<>();
+
+        // WHEN
+        IngestionResult result = new CarIngestionPipeline(1, 16, dictionary)
+                .ingest(new CarsJsonConverter("testcars4.json").streamFromJson(), validCars::add);
+
+        // THEN
+        Car bmw = validCars.stream().filter(car -> car.getModel().equals("BMW")).findFirst().orElseThrow();
+        Car otherBmw = validCars.stream().filter(car -> car.getModel().equals("BMW") && car != bmw).findFirst().orElseThrow();
+        Assertions.assertSame(bmw.getModel(), otherBmw.getModel());
+        Assertions.assertEquals(3, dictionary.size());
+        Assertions.assertTrue(dictionary.getBytesSaved() > 0);
+        Assertions.assertTrue(dictionary.getMissCount() > 0);
+        Assertions.assertEquals(0, dictionary.idOf(validCars.get(0).getModel()));
+        Assertions.assertEquals(4L, result.getProcessedCount());
+    }
+
+    @Test
+    @DisplayName("Check if a failed shard is reported and the other shards are merged in input order")
+    public void test8() {
+
+        //GIVEN
+        List<Car> cars = generateCars(200);
+        Map<String, Supplier<Stream<Car>>> shards = new LinkedHashMap<>();
+        for (int i = 0; i < 10; i++) {
+            List<Car> shardCars = cars.subList(i * 20, i * 20 + 20);
+            shards.put("shard" + i, i == 3
+                    ? () -> Stream.<Car>of(shardCars.get(0)).peek(car -> { throw new MyException(ExceptionCode.JSON_PARSE, "broken shard"); })
+                    : shardCars::stream);
+        }
+
+        // WHEN
+        List<Car> validCars = new ArrayList<>();
+        IngestionResult result = new CarIngestionPipeline(2, 16).ingestShards(shards, validCars::add);
+
+        // THEN
+        List<Car> expectedCars = IntStream.range(0, 200)
+                .filter(i -> i / 20 != 3)
+                .mapToObj(cars::get)
+                .filter(car -> car.getModel().equals("BMW"))
+                .collect(Collectors.toList());
+
+        Assertions.assertEquals(expectedCars, validCars);
+        Assertions.assertEquals(180L, result.getProcessedCount());
+        Assertions.assertEquals(10, result.getShardResults().size());
+        Assertions.assertEquals(List.of("shard3"), result.getFailedShards().stream().map(ShardResult::getName).collect(Collectors.toList()));
+        Assertions.assertTrue(result.getFailedShards().get(0).getError() instanceof MyException);
+        Assertions.assertEquals(Long.valueOf(20), Long.valueOf(result.getShardResults().get(4).getProcessedCount()));
+    }
+
+    @Test
+    @DisplayName("Check if parallel ingestion samples the first invalid cars and keeps messages of deprecated errors")
+    @SuppressWarnings("deprecation")
+    public void test9() {
+
+        //GIVEN
+        List<Car> cars = generateCars(2000);
+
+        // WHEN
+        IngestionResult result = new CarIngestionPipeline(4, 16).ingest(cars.stream(), car -> { });
+
+        // THEN
+        List<Integer> firstInvalid = IntStream.range(0, 2000).filter(i -> i % 7 == 0).map(i -> i + 1).limit(ValidationReport.DEFAULT_SAMPLE_SIZE).boxed().collect(Collectors.toList());
+        Assertions.assertEquals(firstInvalid, List.copyOf(result.getValidationReport().getSamples().keySet()));
+        Assertions.assertEquals(result.getFailedRulesByCar().keySet(), result.getErrors().keySet());
+        Assertions.assertEquals(Map.of("model", "not valid: bmw0"), result.getErrors().get(1));
+        Assertions.assertEquals(Map.of("model", "not valid"), result.getErrors().get(1996));
+    }
+
+    @Test
+    @DisplayName("Check if only valid cars are interned into the pipeline's own dictionary and input cars are not changed")
+    public void test10() {
+
+        //GIVEN
+        List<Car> cars = generateCars(100);
+        List<String> models = cars.stream().map(Car::getModel).collect(Collectors.toList());
+        List<List<String>> components = cars.stream().map(Car::getComponents).collect(Collectors.toList());
+        CarIngestionPipeline pipeline = new CarIngestionPipeline(2, 16);
+
+        // WHEN
+        List<Car> validCars = new ArrayList<>();
+        pipeline.ingest(cars.stream(), validCars::add);
+
+        // THEN
+        Assertions.assertNotSame(StringDictionary.shared(), pipeline.getStringDictionary());
+        Assertions.assertEquals(-1, pipeline.getStringDictionary().idOf("bmw0"));
+        Assertions.assertEquals(2, pipeline.getStringDictionary().size());
+        for (int i = 0; i < cars.size(); i++) {
+            Assertions.assertSame(models.get(i), cars.get(i).getModel());
+            Assertions.assertSame(components.get(i), cars.get(i).getComponents());
+        }
+    }
+
+    @Test
+    @DisplayName("Check if dictionary filled from many threads never holds more than its max size")
+    public void test11() {
+
+        //GIVEN
+        StringDictionary dictionary = new StringDictionary(100);
+
+        // WHEN
+        IntStream.range(0, 100_000).parallel().forEach(i -> dictionary.intern("MODEL " + i));
+
+        // THEN
+        Assertions.assertEquals(100, dictionary.size());
+        Assertions.assertEquals(Long.valueOf(100_000 - 100), Long.valueOf(dictionary.getMissCount()));
+    }
+
+}
@@ -0,0 +1,100 @@
+package kosiorek.michal.services;
+
+import kosiorek.michal.model.Car;
+import kosiorek.michal.model.enums.SortType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class CarServiceMetricsTest {
+
+    @AfterEach
+    public void clean() {
+        CarServiceMetrics.global().disable();
+        CarServiceMetrics.global().reset();
+    }
+
+    @Test
+    @DisplayName("Check if loading and queries are measured when metrics are enabled")
+    public void test1() {
+
+        //GIVEN
+        CarServiceMetrics metrics = CarServiceMetrics.global();
+        metrics.enable();
+
+        // WHEN
+        CarService carService = new CarService("testcars.json");
+        carService.sort(SortType.PRICE, true);
+        carService.sort(SortType.PRICE, true, 1);
+        carService.getCarsWithPriceBetween(BigDecimal.valueOf(100), BigDecimal.valueOf(200));
+
+        // THEN
+        Assertions.assertEquals(1L, metrics.getLatency(CarOperation.LOAD_JSON).getCount());
+        Assertions.assertEquals(2L, metrics.getLatency(CarOperation.SORT).getCount());
+        Assertions.assertEquals(1L, metrics.getLatency(CarOperation.CARS_WITH_PRICE_BETWEEN).getCount());
+        Assertions.assertEquals(carService.getIngestionResult().getProcessedCount(), metrics.getIngestedCars());
+        Assertions.assertEquals(Long.valueOf(carService.getIngestionResult().getFailedRulesByCar().size()), metrics.getValidationFailures().values().stream().max(Long::compare).orElse(0L));
+        Assertions.assertTrue(metrics.getParseNanos() > 0);
+        Assertions.assertTrue(metrics.report().contains("LOAD_JSON"));
+    }
+
+    @Test
+    @DisplayName("Check if nothing is recorded when metrics are disabled")
+    public void test2() {
+
+        //GIVEN
+        CarServiceMetrics metrics = new CarServiceMetrics(false);
+        CarService carService = new CarService("testcars4.json");
+        carService.setMetrics(metrics);
+
+        // WHEN
+        carService.groupByColorAndCount();
+
+        // THEN
+        Assertions.assertEquals(0L, metrics.getLatency(CarOperation.GROUP_BY_COLOR_AND_COUNT).getCount());
+        Assertions.assertEquals(0L, CarServiceMetrics.global().getIngestedCars());
+    }
+
+    @Test
+    @DisplayName("Check if histogram percentiles are within bucket precision")
+    public void test3() {
+
+        //GIVEN
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        // WHEN
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value);
+        }
+
+        // THEN
+        Assertions.assertEquals(100_000L, histogram.getCount());
+        Assertions.assertEquals(100_000L, histogram.getMax());
+        Assertions.assertEquals(50_000, histogram.getValueAtPercentile(50), 50_000 * 0.04);
+        Assertions.assertEquals(99_000, histogram.getValueAtPercentile(99), 99_000 * 0.04);
+        Assertions.assertEquals(50_000.5, histogram.getMean(), 0.001);
+    }
+
+    @Test
+    @DisplayName("Check if service built from a list records one ingestion instead of adding every car")
+    public void test4() {
+
+        //GIVEN
+        CarServiceMetrics metrics = CarServiceMetrics.global();
+        List<Car> cars = new CarService("testcars.json").stream().collect(Collectors.toList());
+        metrics.enable();
+
+        // WHEN
+        new CarService(cars);
+
+        // THEN
+        Assertions.assertEquals(0L, metrics.getLatency(CarOperation.ADD_CAR).getCount());
+        Assertions.assertEquals(Long.valueOf(cars.size()), Long.valueOf(metrics.getIngestedCars()));
+    }
+
+}
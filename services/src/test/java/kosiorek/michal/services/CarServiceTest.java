@@ -1,5 +1,6 @@
 package kosiorek.michal.services;
 
+import kosiorek.michal.exceptions.MyException;
 import kosiorek.michal.model.Car;
 import kosiorek.michal.model.enums.Color;
 import kosiorek.michal.model.enums.SortType;
@@ -12,10 +13,16 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
 
+import java.io.File;
 import java.math.BigDecimal;
+import java.nio.file.Files;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 @ExtendWith(MockitoExtension.class)
 @MockitoSettings(strictness = Strictness.LENIENT)
@@ -227,4 +234,422 @@ public class CarServiceTest {
         Assertions.assertEquals(cars, expectedList);
     }
 
+    @Test
+    @DisplayName("Check if loading not existing json file throws exception")
+    public void test13() {
+
+        // THEN
+        Assertions.assertThrows(MyException.class, () -> new CarService("notexisting.json"));
+    }
+
+    @Test
+    @DisplayName("Check if indexed queries see cars added after loading")
+    public void test14() {
+
+        //GIVEN
+        CarService carService3 = new CarService("testcars4.json");
+        Car car = Car.builder().model("AUDI").color(Color.GREEN).price(new BigDecimal("150.00")).mileage(3000).components(List.of("ABS")).build();
+
+        // WHEN
+        carService3.addCar(car);
+
+        // THEN
+        Assertions.assertTrue(carService3.getCarsWithPriceBetween(BigDecimal.valueOf(150), BigDecimal.valueOf(155)).contains(car));
+        Assertions.assertEquals(List.of(car), carService3.deleteCarsWithMileageLowerThan(2501));
+        Assertions.assertEquals(Long.valueOf(1), carService3.groupByColorAndCount().get(Color.GREEN));
+        Assertions.assertEquals(car, carService3.groupByModelAndMostExpensiveCar().get("AUDI"));
+    }
+
+    @Test
+    @DisplayName("Check if getting cars with all and any of components works")
+    public void test15() {
+
+        //GIVEN
+        CarService carService3 = new CarService("testcars4.json");
+        Car car = Car.builder().model("AUDI").color(Color.GREEN).price(BigDecimal.valueOf(150)).mileage(3000).components(List.of("ABS", "BLUETOOTH")).build();
+        carService3.addCar(car);
+
+        // WHEN
+        List<String> withAll = carService3.getCarsWithAllComponents(List.of("BLUETOOTH", "ABS")).stream().map(Car::getModel).collect(Collectors.toList());
+        List<String> withAny = carService3.getCarsWithAnyComponents(List.of("BLUETOOTH", "ABS", "GPS")).stream().map(Car::getModel).collect(Collectors.toList());
+
+        // THEN
+        Assertions.assertLinesMatch(withAll, List.of("AUDI"));
+        Assertions.assertLinesMatch(withAny, List.of("BMW", "MAZDA", "BMW", "AUDI"));
+        Assertions.assertTrue(carService3.getCarsWithAllComponents(List.of("ABS", "GPS")).isEmpty());
+        Assertions.assertEquals(carService3.getMapOfComponentsAndCarsWithThatComponent().get("ABS").size(), 3);
+    }
+
+    @Test
+    @DisplayName("Check if car service backed by columnar store gives the same results")
+    public void test16() {
+
+        //GIVEN
+        CarService columnarCarService = new CarService("testcars4.json", CarIngestionPipeline.sequential(), new ColumnarCarStore());
+        CarService carService3 = new CarService("testcars4.json");
+
+        // THEN
+        Assertions.assertEquals(carService3.toString(), columnarCarService.toString());
+        Assertions.assertEquals(carService3.sort(SortType.PRICE, true), columnarCarService.sort(SortType.PRICE, true));
+        Assertions.assertEquals(carService3.groupByModelAndMostExpensiveCar(), columnarCarService.groupByModelAndMostExpensiveCar());
+        Assertions.assertEquals(carService3.getMapOfComponentsAndCarsWithThatComponent(), columnarCarService.getMapOfComponentsAndCarsWithThatComponent());
+        Assertions.assertEquals(carService3.getCarsWithPriceBetween(BigDecimal.valueOf(110), BigDecimal.valueOf(200)), columnarCarService.getCarsWithPriceBetween(BigDecimal.valueOf(110), BigDecimal.valueOf(200)));
+    }
+
+    @Test
+    @DisplayName("Check if materialized aggregates stay equal to computed ones after adding cars")
+    public void test17() {
+
+        //GIVEN
+        CarService aggregatedCarService = new CarService("testcars4.json");
+        CarService carService3 = new CarService("testcars4.json");
+        aggregatedCarService.enableMaterializedAggregates();
+        Car car = Car.builder().model("MAZDA").color(Color.WHITE).price(BigDecimal.valueOf(170)).mileage(100).components(List.of("ABS")).build();
+
+        // WHEN
+        aggregatedCarService.addCar(car);
+        carService3.addCar(car);
+
+        // THEN
+        Assertions.assertEquals(carService3.groupByColorAndCount(), aggregatedCarService.groupByColorAndCount());
+        Assertions.assertEquals(carService3.groupByModelAndMostExpensiveCar(), aggregatedCarService.groupByModelAndMostExpensiveCar());
+        Assertions.assertEquals(carService3.getCarWithTheBiggestPrice(), aggregatedCarService.getCarWithTheBiggestPrice());
+        Assertions.assertEquals(carService3.getStatistics().toString(), aggregatedCarService.getStatistics().toString());
+        Assertions.assertEquals(3, aggregatedCarService.getCarWithTheBiggestPrice().size());
+    }
+
+    @Test
+    @DisplayName("Check if top and bottom cars equal beginning of full sort")
+    public void test18() {
+
+        //GIVEN
+        CarService carService3 = new CarService("testcars4.json");
+        for (int i = 0; i < 200; i++) {
+            carService3.addCar(Car.builder().model(i % 2 == 0 ? "AUDI" : "FIAT").color(Color.values()[i % 5]).price(BigDecimal.valueOf(i % 37)).mileage(i * 7 % 101).components(List.of("ABS")).build());
+        }
+
+        // THEN
+        for (SortType sortType : SortType.values()) {
+            Assertions.assertEquals(carService3.sort(sortType, true).subList(0, 10), carService3.getTopCars(sortType, 10));
+            Assertions.assertEquals(carService3.sort(sortType, false).subList(0, 10), carService3.getBottomCars(sortType, 10));
+        }
+        Assertions.assertTrue(carService3.getTopCars(SortType.PRICE, 0).isEmpty());
+        Assertions.assertEquals(204, carService3.getTopCars(SortType.PRICE, 1000).size());
+    }
+
+    @Test
+    @DisplayName("Check if car service restored from binary snapshot equals saved one")
+    public void test19() throws Exception {
+
+        //GIVEN
+        CarService carService3 = new CarService("testcars4.json");
+        carService3.addCar(Car.builder().model("AUDI").color(null).price(new BigDecimal("99.99")).mileage(10).components(null).build());
+        File snapshot = File.createTempFile("cars", ".snapshot");
+        snapshot.deleteOnExit();
+
+        // WHEN
+        carService3.saveSnapshot(snapshot.getAbsolutePath());
+        CarService restored = CarService.fromSnapshot(snapshot.getAbsolutePath());
+
+        // THEN
+        Assertions.assertEquals(carService3.toString(), restored.toString());
+        Assertions.assertEquals(carService3.getMapOfComponentsAndCarsWithThatComponent(), restored.getMapOfComponentsAndCarsWithThatComponent());
+    }
+
+    @Test
+    @DisplayName("Check if damaged binary snapshot is rejected")
+    public void test20() throws Exception {
+
+        //GIVEN
+        File snapshot = File.createTempFile("cars", ".snapshot");
+        snapshot.deleteOnExit();
+        new CarService("testcars4.json").saveSnapshot(snapshot.getAbsolutePath());
+        byte[] bytes = Files.readAllBytes(snapshot.toPath());
+        bytes[bytes.length - 1]++;
+        Files.write(snapshot.toPath(), bytes);
+
+        // THEN
+        Assertions.assertThrows(MyException.class, () -> CarService.fromSnapshot(snapshot.getAbsolutePath()));
+    }
+
+    @Test
+    @DisplayName("Check if cars exported to compact gzip json are loaded back unchanged")
+    public void test21() throws Exception {
+
+        //GIVEN
+        File json = File.createTempFile("cars", ".json.gz");
+        json.deleteOnExit();
+
+        // WHEN
+        carService.exportToJson(json.getAbsolutePath(), false, true);
+        CarService loaded = new CarService(json.getAbsolutePath());
+
+        // THEN
+        Assertions.assertEquals(carService.toString(), loaded.toString());
+    }
+
+    @Test
+    @DisplayName("Check if pretty printed export gives the same cars as compact one")
+    public void test22() throws Exception {
+
+        //GIVEN
+        File compact = File.createTempFile("cars", ".json");
+        File pretty = File.createTempFile("cars", ".json");
+        compact.deleteOnExit();
+        pretty.deleteOnExit();
+
+        // WHEN
+        carService.exportToJson(compact.getAbsolutePath(), false, false);
+        carService.exportToJson(pretty.getAbsolutePath(), true, false);
+
+        // THEN
+        Assertions.assertTrue(Files.size(compact.toPath()) < Files.size(pretty.toPath()));
+        Assertions.assertEquals(new CarService(compact.getAbsolutePath()).toString(), new CarService(pretty.getAbsolutePath()).toString());
+    }
+
+    @Test
+    @DisplayName("Check if query with filters, sort and limit gives the same cars as chained methods")
+    public void test23() {
+
+        //GIVEN
+        List<Car> expected = carService.sort(SortType.PRICE, true).stream()
+                .filter(car -> car.getPrice().compareTo(BigDecimal.valueOf(100)) >= 0 && car.getPrice().compareTo(BigDecimal.valueOf(200)) <= 0)
+                .filter(car -> car.getMileage() >= 1000)
+                .filter(car -> car.getColor() == Color.BLACK)
+                .limit(2)
+                .collect(Collectors.toList());
+        CarService withoutIndexes = new CarService(new ListCarStore(), false);
+        carService.stream().forEach(withoutIndexes::addCar);
+
+        // WHEN
+        List<Car> indexed = carService.query()
+                .priceBetween(BigDecimal.valueOf(100), BigDecimal.valueOf(200))
+                .mileageAtLeast(1000)
+                .color(Color.BLACK)
+                .sortBy(SortType.PRICE, true)
+                .limit(2)
+                .list();
+        List<Car> scanned = withoutIndexes.query()
+                .priceBetween(BigDecimal.valueOf(100), BigDecimal.valueOf(200))
+                .mileageAtLeast(1000)
+                .color(Color.BLACK)
+                .sortBy(SortType.PRICE, true)
+                .limit(2)
+                .list();
+
+        // THEN
+        Assertions.assertEquals(expected, indexed);
+        Assertions.assertEquals(expected, scanned);
+    }
+
+    @Test
+    @DisplayName("Check if query without sort keeps insertion order and projects found cars")
+    public void test24() {
+
+        // WHEN
+        List<String> models = carService.query()
+                .withAllComponents(List.of("ABS"))
+                .filter(car -> car.getPrice().compareTo(BigDecimal.valueOf(1000)) < 0)
+                .select(Car::getModel);
+
+        // THEN
+        Assertions.assertEquals(carService.getCarsWithAllComponents(List.of("ABS")).stream().map(Car::getModel).collect(Collectors.toList()), models);
+        Assertions.assertEquals(1, carService.query().withAllComponents(List.of("ABS")).limit(1).count());
+        Assertions.assertEquals(0, carService.query().model("NOT EXISTING").count());
+    }
+
+    @Test
+    @DisplayName("Check if analytics in parallel mode give the same results as sequential ones")
+    public void test25() {
+
+        //GIVEN
+        List<Car> cars = IntStream.range(0, 20_000)
+                .mapToObj(i -> Car.builder()
+                        .model("MODEL " + (char) ('A' + i % 13))
+                        .price(BigDecimal.valueOf(i % 997, i % 3))
+                        .color(Color.values()[i % Color.values().length])
+                        .mileage(i)
+                        .components(List.of("COMPONENT " + (char) ('A' + i % 11)))
+                        .build())
+                .collect(Collectors.toList());
+        CarService sequential = new CarService(cars);
+        CarService parallel = new CarService(new ListCarStore(), false);
+        cars.forEach(parallel::addCar);
+
+        // WHEN
+        parallel.enableParallelMode(4, 1000);
+
+        // THEN
+        Assertions.assertTrue(parallel.isParallelModeEnabled());
+        Assertions.assertEquals(sequential.groupByColorAndCount(), parallel.groupByColorAndCount());
+        Assertions.assertEquals(sequential.groupByModelAndMostExpensiveCar(), parallel.groupByModelAndMostExpensiveCar());
+        Assertions.assertEquals(sequential.getCarWithTheBiggestPrice(), parallel.getCarWithTheBiggestPrice());
+        Assertions.assertEquals(sequential.getMapOfComponentsAndCarsWithThatComponent(), parallel.getMapOfComponentsAndCarsWithThatComponent());
+        Assertions.assertEquals(sequential.getStatistics().toString(), parallel.getStatistics().toString());
+        parallel.disableParallelMode();
+    }
+
+    @Test
+    @DisplayName("Check if color and component filters answered by bitmaps give the same cars as indexes and scans")
+    public void test26() {
+
+        //GIVEN
+        List<Car> cars = List.of(
+                Car.builder().model("BMW").price(BigDecimal.valueOf(120)).color(Color.BLACK).mileage(1500).components(List.of("ABS", "BLUETOOTH")).build(),
+                Car.builder().model("AUDI").price(BigDecimal.valueOf(150)).color(Color.BLACK).mileage(500).components(List.of("ABS")).build(),
+                Car.builder().model("MAZDA").price(BigDecimal.valueOf(160)).color(Color.WHITE).mileage(2500).components(List.of("ABS", "BLUETOOTH", "ALLOY WHEELS")).build(),
+                Car.builder().model("BMW").price(BigDecimal.valueOf(180)).color(Color.BLACK).mileage(3000).components(List.of("BLUETOOTH", "ABS", "ALLOY WHEELS")).build());
+        CarService indexed = new CarService(cars);
+        CarService bitmapped = new CarService(cars);
+        bitmapped.enableBitmapIndexes();
+        CarService scanned = new CarService(new ListCarStore(), false);
+        cars.forEach(scanned::addCar);
+        scanned.enableBitmapIndexes();
+
+        // WHEN
+        Function<CarService, List<Car>> query = carService -> carService.query()
+                .color(Color.BLACK)
+                .withAllComponents(List.of("ABS", "BLUETOOTH"))
+                .withoutComponents(List.of("ALLOY WHEELS"))
+                .list();
+
+        // THEN
+        Assertions.assertEquals(List.of(cars.get(0)), query.apply(indexed));
+        Assertions.assertEquals(List.of(cars.get(0)), query.apply(bitmapped));
+        Assertions.assertEquals(List.of(cars.get(0)), query.apply(scanned));
+        Assertions.assertEquals(2, bitmapped.query().color(Color.BLACK).withAnyComponents(List.of("BLUETOOTH", "AIR CONDITIONING")).count());
+        Assertions.assertEquals(List.of(cars.get(3)), scanned.query().color(Color.BLACK).withAnyComponents(List.of("ALLOY WHEELS")).mileageAtLeast(1000).list());
+    }
+
+    @Test
+    @DisplayName("Check if cars with given components are grouped by color and counted, also after adding a car")
+    public void test27() {
+
+        //GIVEN
+        CarService bitmapped = new CarService("testcars.json");
+        bitmapped.enableBitmapIndexes();
+        bitmapped.addCar(Car.builder().model("AUDI").price(BigDecimal.valueOf(200)).color(Color.WHITE).mileage(100).components(List.of("ABS", "BLUETOOTH")).build());
+        CarService indexed = new CarService(bitmapped.stream().collect(Collectors.toList()));
+
+        // WHEN
+        Map<Color, Long> colorCounts = bitmapped.groupByColorAndCount(List.of("ABS"));
+
+        // THEN
+        Assertions.assertEquals(Map.of(Color.BLACK, 1L, Color.WHITE, 1L), colorCounts);
+        Assertions.assertEquals(indexed.groupByColorAndCount(List.of("ABS")), colorCounts);
+        Assertions.assertEquals(Map.of(Color.WHITE, 2L), bitmapped.groupByColorAndCount(List.of("BLUETOOTH")));
+        Assertions.assertEquals(Map.of(), bitmapped.groupByColorAndCount(List.of("ABS", "SUNROOF")));
+    }
+
+    @Test
+    @DisplayName("Check if shards are loaded into one service and a missing shard does not stop the others")
+    public void test28() {
+
+        //GIVEN
+        List<String> filenames = List.of("testcars.json", "missing.json", "testcars2.json", "testcars4.json");
+        long expectedSize = Stream.of("testcars.json", "testcars2.json", "testcars4.json")
+                .mapToLong(filename -> new CarService(filename).getIngestionResult().getValidCount())
+                .sum();
+
+        // WHEN
+        CarService fromFiles = CarService.fromFiles(filenames, CarIngestionPipeline.parallel());
+        CarService fromDirectory = CarService.fromDirectory(".", "testcars*.json", new CarIngestionPipeline(2, 16));
+
+        // THEN
+        IngestionResult result = fromFiles.getIngestionResult();
+        Assertions.assertEquals(expectedSize, fromFiles.size());
+        Assertions.assertEquals(List.of("missing.json"), result.getFailedShards().stream().map(ShardResult::getName).collect(Collectors.toList()));
+        Assertions.assertEquals(new CarService("testcars.json").stream().collect(Collectors.toList()), fromFiles.stream().limit(new CarService("testcars.json").size()).collect(Collectors.toList()));
+        Assertions.assertEquals(4, fromDirectory.getIngestionResult().getShardResults().size());
+        Assertions.assertTrue(fromDirectory.getIngestionResult().getFailedShards().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Check if car rejected by the store is not reachable through indexes")
+    public void test29() {
+
+        //GIVEN
+        CarService columnarCarService = new CarService(new ColumnarCarStore(), true);
+        Car tooExpensive = Car.builder().model("BMW").price(new BigDecimal("123456789012345678901234567890.5")).color(Color.BLACK).mileage(100).components(List.of("ABS")).build();
+        Car car = Car.builder().model("AUDI").price(BigDecimal.valueOf(100)).color(Color.BLACK).mileage(200).components(List.of("ABS")).build();
+
+        // WHEN
+        Assertions.assertThrows(MyException.class, () -> columnarCarService.addCar(tooExpensive));
+        columnarCarService.addCar(car);
+
+        // THEN
+        Assertions.assertEquals(List.of(car), columnarCarService.deleteCarsWithMileageLowerThan(0));
+        Assertions.assertEquals(1, columnarCarService.size());
+        Assertions.assertEquals(Long.valueOf(1), Long.valueOf(columnarCarService.getVersion()));
+    }
+
+    @Test
+    @DisplayName("Check if no car is returned for NaN mileage")
+    public void test30() {
+
+        // WHEN
+        List<Car> cars = carService.deleteCarsWithMileageLowerThan(Double.NaN);
+
+        // THEN
+        Assertions.assertTrue(cars.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Check if query with price ranges which do not overlap finds no cars and component groups narrow the result")
+    public void test31() {
+
+        //GIVEN
+        CarService withoutIndexes = new CarService(new ListCarStore(), false);
+        carService.stream().forEach(withoutIndexes::addCar);
+
+        // WHEN
+        List<Car> indexed = carService.query().priceBetween(BigDecimal.valueOf(100), BigDecimal.valueOf(200)).priceBetween(BigDecimal.valueOf(250), BigDecimal.valueOf(400)).list();
+        int scanned = withoutIndexes.query().priceBetween(BigDecimal.valueOf(100), BigDecimal.valueOf(200)).priceBetween(BigDecimal.valueOf(250), BigDecimal.valueOf(400)).count();
+        List<String> models = carService.query()
+                .withAnyComponents(List.of("ABS", "BLUETOOTH"))
+                .withAnyComponents(List.of("ALLOY WHEELS"))
+                .select(Car::getModel);
+
+        // THEN
+        Assertions.assertTrue(indexed.isEmpty());
+        Assertions.assertEquals(0, scanned);
+        Assertions.assertEquals(List.of("MAZDA"), models);
+    }
+
+    @Test
+    @DisplayName("Check if query without sorting checks filters matching most cars on the pass instead of listing them from the index")
+    public void test32() {
+
+        //GIVEN
+        AtomicInteger listed = new AtomicInteger();
+        ListCarStore store = new ListCarStore();
+        TreeCarIndex index = new TreeCarIndex(store) {
+            @Override
+            public int[] withMileageAtLeast(int mileageFrom) {
+                listed.incrementAndGet();
+                return super.withMileageAtLeast(mileageFrom);
+            }
+        };
+        for (int i = 0; i < 10_000; i++) {
+            Car car = Car.builder().model("BMW").price(BigDecimal.TEN).color(Color.values()[i % Color.values().length]).mileage(i).build();
+            store.add(car);
+            index.add(car, i);
+        }
+        CarService service = new CarService(store, index);
+
+        // WHEN
+        List<Car> first = service.query().mileageAtLeast(0).limit(20).list();
+        int listedWithoutSort = listed.get();
+        List<Car> last = service.query().mileageAtLeast(9_990).list();
+        List<Car> sorted = service.query().mileageAtLeast(0).color(Color.BLACK).sortBy(SortType.MILEAGE, true).limit(3).list();
+
+        // THEN
+        Assertions.assertEquals(0, listedWithoutSort);
+        Assertions.assertEquals(2, listed.get());
+        Assertions.assertEquals(IntStream.range(0, 20).boxed().collect(Collectors.toList()), first.stream().map(Car::getMileage).collect(Collectors.toList()));
+        Assertions.assertEquals(IntStream.range(9_990, 10_000).boxed().collect(Collectors.toList()), last.stream().map(Car::getMileage).collect(Collectors.toList()));
+        Assertions.assertEquals(3, sorted.size());
+        Assertions.assertTrue(sorted.stream().allMatch(car -> car.getColor() == Color.BLACK));
+    }
+
 }
@@ -0,0 +1,75 @@
+package kosiorek.michal.services;
+
+import kosiorek.michal.model.Car;
+import kosiorek.michal.model.enums.Color;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public class CarStatisticsTest {
+
+    private CarService carService;
+
+    @BeforeEach
+    public void init() {
+        carService = new CarService("testcars4.json");
+    }
+
+    @Test
+    @DisplayName("Check if price and mileage statistics are computed in one pass")
+    public void test1() {
+
+        // WHEN
+        CarStatistics statistics = carService.getStatistics();
+
+        // THEN
+        Assertions.assertEquals(4L, statistics.getCount());
+        Assertions.assertEquals(BigDecimal.valueOf(100), statistics.getMinPrice());
+        Assertions.assertEquals(BigDecimal.valueOf(170), statistics.getMaxPrice());
+        Assertions.assertEquals(BigDecimal.valueOf(600), statistics.getSumPrice());
+        Assertions.assertEquals(0, BigDecimal.valueOf(150).compareTo(statistics.getAveragePrice()));
+        Assertions.assertEquals(500, statistics.getMinMileage());
+        Assertions.assertEquals(2500, statistics.getMaxMileage());
+        Assertions.assertEquals(1500.0, statistics.getAverageMileage(), 0.0001);
+        Assertions.assertTrue(statistics.getPricePercentiles().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Check if color and model breakdowns work")
+    public void test2() {
+
+        // WHEN
+        CarStatistics statistics = carService.getStatistics();
+
+        // THEN
+        Assertions.assertEquals(2L, statistics.getByColor().get(Color.BLACK).getCount());
+        Assertions.assertEquals(BigDecimal.valueOf(170), statistics.getByModel().get("BMW").getMaxPrice());
+        Assertions.assertEquals(3000L, statistics.getByModel().get("MAZDA").getSumMileage());
+        Assertions.assertFalse(statistics.getByColor().containsKey(Color.GREEN));
+    }
+
+    @Test
+    @DisplayName("Check if parallel statistics with percentiles equal sequential ones")
+    public void test3() {
+
+        //GIVEN
+        for (int i = 0; i < 1000; i++) {
+            carService.addCar(Car.builder().model("AUDI").color(Color.values()[i % 5]).price(BigDecimal.valueOf(i)).mileage(i * 10).components(List.of("ABS")).build());
+        }
+
+        // WHEN
+        CarStatistics sequential = carService.getStatistics(true, false);
+        CarStatistics parallel = carService.getStatistics(true, true);
+
+        // THEN
+        Assertions.assertEquals(sequential.toString(), parallel.toString());
+        Assertions.assertEquals(sequential.getPricePercentiles(), parallel.getPricePercentiles());
+        Assertions.assertEquals(sequential.getByModel().get("AUDI").getSumPrice(), parallel.getByModel().get("AUDI").getSumPrice());
+        Assertions.assertEquals(BigDecimal.valueOf(497), parallel.getPricePercentiles().get(50));
+    }
+
+}
@@ -0,0 +1,207 @@
+package kosiorek.michal.services;
+
+import kosiorek.michal.exceptions.MyException;
+import kosiorek.michal.model.Car;
+import kosiorek.michal.model.enums.Color;
+import kosiorek.michal.model.enums.SortType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ConcurrentCarServiceTest {
+
+    private static Car car(int i) {
+        return Car.builder()
+                .model(i % 2 == 0 ? "AUDI" : "FIAT")
+                .color(Color.values()[i % Color.values().length])
+                .price(BigDecimal.valueOf(100 + i % 50))
+                .mileage(i)
+                .components(List.of("ABS"))
+                .build();
+    }
+
+    @Test
+    @DisplayName("Check if added cars are visible only after batch is published")
+    public void test1() {
+
+        //GIVEN
+        ConcurrentCarService concurrentCarService = new ConcurrentCarService(new CarService("testcars4.json"), 3);
+        CarService before = concurrentCarService.snapshot();
+
+        // WHEN
+        concurrentCarService.addCar(car(1));
+        concurrentCarService.addCar(car(2));
+
+        // THEN
+        Assertions.assertEquals(4, concurrentCarService.snapshot().size());
+        Assertions.assertEquals(2, concurrentCarService.getPendingCount());
+
+        concurrentCarService.addCar(car(3));
+        Assertions.assertEquals(7, concurrentCarService.snapshot().size());
+        Assertions.assertEquals(4, before.size());
+
+        concurrentCarService.flush();
+        Assertions.assertEquals(1L, concurrentCarService.getVersion());
+        Assertions.assertThrows(MyException.class, () -> concurrentCarService.snapshot().addCar(car(4)));
+    }
+
+    @Test
+    @DisplayName("Check if concurrent readers always see consistent snapshots while writers add cars")
+    public void test2() throws Exception {
+
+        //GIVEN
+        int writers = 4;
+        int readers = 4;
+        int carsPerWriter = 2_000;
+        ConcurrentCarService concurrentCarService = new ConcurrentCarService(new CarService(new ArrayList<>()), 250);
+        ExecutorService executorService = Executors.newFixedThreadPool(writers + readers);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> writerFutures = new ArrayList<>();
+        List<Future<Integer>> readerFutures = new ArrayList<>();
+
+        // WHEN
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            writerFutures.add(executorService.submit(() -> {
+                start.await();
+                for (int i = 0; i < carsPerWriter; i++) {
+                    concurrentCarService.addCar(car(writer * carsPerWriter + i));
+                }
+                return null;
+            }));
+        }
+        for (int r = 0; r < readers; r++) {
+            readerFutures.add(executorService.submit(() -> {
+                start.await();
+                int checks = 0;
+                while (writing.get() || checks == 0) {
+                    CarService snapshot = concurrentCarService.snapshot();
+                    int size = snapshot.size();
+                    long counted = snapshot.groupByColorAndCount().values().stream().mapToLong(Long::longValue).sum();
+                    Map<String, List<Car>> byComponent = snapshot.getMapOfComponentsAndCarsWithThatComponent();
+                    Assertions.assertEquals((long) size, counted);
+                    Assertions.assertEquals(size, snapshot.sort(SortType.MILEAGE, false).size());
+                    Assertions.assertEquals(size, byComponent.isEmpty() ? 0 : byComponent.get("ABS").size());
+                    Assertions.assertEquals(0, size % 250);
+                    checks++;
+                }
+                return checks;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : writerFutures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        writing.set(false);
+        for (Future<Integer> future : readerFutures) {
+            Assertions.assertTrue(future.get(60, TimeUnit.SECONDS) > 0);
+        }
+        executorService.shutdown();
+        concurrentCarService.flush();
+
+        // THEN
+        Assertions.assertEquals(writers * carsPerWriter, concurrentCarService.snapshot().size());
+    }
+
+
+    @Test
+    @DisplayName("Check if publishing batches does not index again cars of older segments much bigger than the batches")
+    public void test3() {
+
+        //GIVEN
+        List<Car> cars = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            cars.add(car(i));
+        }
+        ConcurrentCarService small = new ConcurrentCarService(new CarService(cars.subList(0, 1_000)), 500);
+        ConcurrentCarService big = new ConcurrentCarService(new CarService(cars), 500);
+        long smallIndexed = small.getIndexedCount();
+        long bigIndexed = big.getIndexedCount();
+
+        // WHEN
+        for (int i = 0; i < 2_000; i++) {
+            small.addCar(car(i));
+            big.addCar(car(i));
+        }
+        big.addCars(cars.subList(0, 10));
+        big.flush();
+        big.addCars(cars.subList(0, 500));
+
+        // THEN
+        Assertions.assertTrue(small.getIndexedCount() - smallIndexed <= 4L * 2_000);
+        Assertions.assertTrue(big.getIndexedCount() - bigIndexed <= 4L * (2_000 + 10 + 500));
+
+        List<Car> all = new ArrayList<>(cars);
+        all.addAll(cars.subList(0, 2_000));
+        all.addAll(cars.subList(0, 10));
+        all.addAll(cars.subList(0, 500));
+        CarService expected = new CarService(all);
+        CarService snapshot = big.snapshot();
+        Assertions.assertEquals(expected.size(), snapshot.size());
+        Assertions.assertEquals(expected.getCarsWithPriceBetween(BigDecimal.valueOf(110), BigDecimal.valueOf(120)), snapshot.getCarsWithPriceBetween(BigDecimal.valueOf(110), BigDecimal.valueOf(120)));
+        Assertions.assertEquals(expected.groupByModelAndMostExpensiveCar(), snapshot.groupByModelAndMostExpensiveCar());
+        Assertions.assertEquals(expected.groupByColorAndCount(), snapshot.groupByColorAndCount());
+        Assertions.assertEquals(expected.getMapOfComponentsAndCarsWithThatComponent(), snapshot.getMapOfComponentsAndCarsWithThatComponent());
+        Assertions.assertEquals(expected.sort(SortType.MILEAGE, true), snapshot.sort(SortType.MILEAGE, true));
+    }
+
+    @Test
+    @DisplayName("Check if segments are merged so their number and indexing work per car grow only logarithmically")
+    public void test4() {
+
+        //GIVEN
+        int count = 100_000;
+        ConcurrentCarService concurrentCarService = new ConcurrentCarService(new CarService(new ArrayList<>()), 100);
+        int maxSegments = 0;
+
+        // WHEN
+        for (int i = 0; i < count; i++) {
+            concurrentCarService.addCar(car(i));
+            maxSegments = Math.max(maxSegments, concurrentCarService.getSegmentCount());
+        }
+
+        // THEN
+        int log2 = 32 - Integer.numberOfLeadingZeros(count);
+        Assertions.assertTrue(maxSegments <= log2, "segments: " + maxSegments);
+        Assertions.assertTrue(concurrentCarService.getIndexedCount() <= (long) count * log2, "indexed: " + concurrentCarService.getIndexedCount());
+        CarService snapshot = concurrentCarService.snapshot();
+        Assertions.assertEquals(count, snapshot.size());
+        Assertions.assertEquals(count - 99_000, snapshot.query().mileageAtLeast(99_000).count());
+        Assertions.assertEquals(List.of(99_999), snapshot.query().mileageAtLeast(0).sortBy(SortType.MILEAGE, true).limit(1).select(Car::getMileage));
+    }
+
+    @Test
+    @DisplayName("Check if snapshot rejects changes and does not change when an added car is changed by the caller")
+    public void test5() {
+
+        //GIVEN
+        ConcurrentCarService concurrentCarService = new ConcurrentCarService(new CarService(new ArrayList<>()), 1);
+        Car car = car(1);
+        car.setComponents(new ArrayList<>(List.of("ABS")));
+
+        // WHEN
+        concurrentCarService.addCar(car);
+        car.setModel("BMW");
+        car.getComponents().add("RADIO");
+        CarService snapshot = concurrentCarService.snapshot();
+
+        // THEN
+        Assertions.assertEquals(List.of(car(1)), snapshot.query().model("FIAT").list());
+        Assertions.assertTrue(snapshot.query().model("BMW").list().isEmpty());
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> snapshot.query().list().get(0).getComponents().add("RADIO"));
+        Assertions.assertThrows(MyException.class, snapshot::enableBitmapIndexes);
+        Assertions.assertThrows(MyException.class, snapshot::enableMaterializedAggregates);
+        Assertions.assertThrows(MyException.class, () -> snapshot.enableParallelMode(2, 0));
+        Assertions.assertThrows(MyException.class, () -> snapshot.setMetrics(new CarServiceMetrics(true)));
+    }
+
+}
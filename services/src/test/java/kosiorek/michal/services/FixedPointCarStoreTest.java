@@ -0,0 +1,95 @@
+package kosiorek.michal.services;
+
+import kosiorek.michal.model.Car;
+import kosiorek.michal.model.enums.Color;
+import kosiorek.michal.model.enums.SortType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+public class FixedPointCarStoreTest {
+
+    @Test
+    @DisplayName("Check if price range scan on minor units gives the same cars as comparing BigDecimal prices")
+    public void test1() {
+
+        // GIVEN
+        List<Car> cars = Arrays.asList(
+                Car.builder().model("A").price(new BigDecimal("99.99")).color(Color.RED).mileage(1).build(),
+                Car.builder().model("B").price(new BigDecimal("100")).color(Color.RED).mileage(1).build(),
+                Car.builder().model("C").price(new BigDecimal("150.5")).color(Color.RED).mileage(1).build(),
+                Car.builder().model("D").price(new BigDecimal("2E+2")).color(Color.RED).mileage(1).build(),
+                Car.builder().model("E").price(new BigDecimal("200.001")).color(Color.RED).mileage(1).build(),
+                Car.builder().model("F").price(new BigDecimal("199.999")).color(Color.RED).mileage(1).build(),
+                Car.builder().model("G").color(Color.RED).mileage(1).build());
+        FixedPointCarStore store = new FixedPointCarStore(new ListCarStore(), 2);
+        cars.forEach(store::add);
+
+        // WHEN
+        int[] ordinals = store.scanPriceBetween(new BigDecimal("100.001"), new BigDecimal("200.0"));
+
+        // THEN
+        Assertions.assertArrayEquals(new int[]{2, 3, 5}, ordinals);
+        Assertions.assertEquals(Long.valueOf(15050), Long.valueOf(store.getMinorUnitPrice(2)));
+        Assertions.assertFalse(store.hasMinorUnitPrice(4));
+        Assertions.assertFalse(store.hasMinorUnitPrice(6));
+        Assertions.assertEquals(new BigDecimal("200.001"), store.getPrice(4));
+    }
+
+    @Test
+    @DisplayName("Check if car service over fixed-point store gives the same results as the default one")
+    public void test2() {
+
+        // GIVEN
+        CarService expected = new CarService("testcars4.json");
+
+        // WHEN
+        CarService carService = new CarService("testcars4.json", CarIngestionPipeline.sequential(), new FixedPointCarStore(new ListCarStore(), 2), false);
+
+        // THEN
+        Assertions.assertEquals(expected.getCarsWithPriceBetween(BigDecimal.valueOf(110), new BigDecimal("170.00")), carService.getCarsWithPriceBetween(BigDecimal.valueOf(110), new BigDecimal("170.00")));
+        Assertions.assertEquals(expected.groupByModelAndMostExpensiveCar(), carService.groupByModelAndMostExpensiveCar());
+        Assertions.assertEquals(expected.getCarWithTheBiggestPrice(), carService.getCarWithTheBiggestPrice());
+        Assertions.assertEquals(expected.sort(SortType.PRICE, true), carService.sort(SortType.PRICE, true));
+        Assertions.assertEquals(expected.sort(SortType.PRICE, false, 3), carService.sort(SortType.PRICE, false, 3));
+    }
+
+    @Test
+    @DisplayName("Check if indexed car service over fixed-point store answers price ranges by minor units without reading BigDecimal prices")
+    public void test3() {
+
+        // GIVEN
+        int[] priceReads = {0};
+        FixedPointCarStore store = new FixedPointCarStore(new ListCarStore(), 2) {
+            @Override
+            public BigDecimal getPrice(int ordinal) {
+                priceReads[0]++;
+                return super.getPrice(ordinal);
+            }
+        };
+        CarService expected = new CarService("testcars4.json");
+        CarService carService = new CarService("testcars4.json", CarIngestionPipeline.sequential(), store, true);
+        // price without exact minor units stays in the BigDecimal part of the index
+        Car notFixedPoint = Car.builder().model("E").price(new BigDecimal("150.001")).color(Color.RED).mileage(1).build();
+        carService.addCar(notFixedPoint);
+        expected.addCar(notFixedPoint);
+        priceReads[0] = 0;
+
+        // WHEN
+        List<Car> between = carService.getCarsWithPriceBetween(BigDecimal.valueOf(110), new BigDecimal("170.00"));
+        List<Car> queried = carService.query().priceBetween(new BigDecimal("100.001"), new BigDecimal("200")).limit(3).list();
+        List<Car> empty = carService.getCarsWithPriceBetween(new BigDecimal("150.0011"), new BigDecimal("150.0019"));
+
+        // THEN
+        Assertions.assertEquals(0, priceReads[0]);
+        Assertions.assertEquals(expected.getCarsWithPriceBetween(BigDecimal.valueOf(110), new BigDecimal("170.00")), between);
+        Assertions.assertEquals(expected.query().priceBetween(new BigDecimal("100.001"), new BigDecimal("200")).limit(3).list(), queried);
+        Assertions.assertEquals(expected.getCarsWithPriceBetween(new BigDecimal("150.0011"), new BigDecimal("150.0019")), empty);
+        Assertions.assertEquals(List.of(notFixedPoint), carService.getCarsWithPriceBetween(new BigDecimal("150.0005"), new BigDecimal("150.0015")));
+    }
+
+}
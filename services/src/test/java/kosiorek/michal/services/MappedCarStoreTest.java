@@ -0,0 +1,104 @@
+package kosiorek.michal.services;
+
+import kosiorek.michal.model.Car;
+import kosiorek.michal.model.enums.Color;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+public class MappedCarStoreTest {
+
+    private File directory;
+
+    @BeforeEach
+    public void init() throws IOException {
+        directory = Files.createTempDirectory("cars").toFile();
+    }
+
+    @AfterEach
+    public void clean() {
+        Arrays.stream(directory.listFiles()).forEach(File::delete);
+        directory.delete();
+    }
+
+    @Test
+    @DisplayName("Check if cars are still in the store after reopening it")
+    public void test1() {
+
+        // GIVEN
+        Car car = Car.builder().model("BMW").price(new BigDecimal("120.50")).color(Color.BLACK).mileage(1000).components(Arrays.asList("ABS", "AIR CONDITIONING")).build();
+        Car carWithoutValues = Car.builder().mileage(500).build();
+        try (MappedCarStore store = new MappedCarStore(directory.getPath())) {
+            store.add(car);
+            store.add(carWithoutValues);
+        }
+
+        // WHEN
+        try (MappedCarStore store = new MappedCarStore(directory.getPath())) {
+
+            // THEN
+            Assertions.assertEquals(2, store.size());
+            Assertions.assertEquals(car, store.get(0));
+            Assertions.assertEquals(carWithoutValues, store.get(1));
+            Assertions.assertEquals(3, store.getDictionarySize());
+        }
+    }
+
+    @Test
+    @DisplayName("Check if car service without indexes over mapped store gives the same results as the default one")
+    public void test2() {
+
+        // GIVEN
+        CarService expected = new CarService("testcars4.json");
+        try (MappedCarStore store = new MappedCarStore(directory.getPath())) {
+            new CarService("testcars4.json", CarIngestionPipeline.sequential(), store, false);
+        }
+
+        try (MappedCarStore store = new MappedCarStore(directory.getPath())) {
+
+            // WHEN
+            CarService carService = new CarService(store, false);
+
+            // THEN
+            Assertions.assertEquals(expected.getCarsWithPriceBetween(BigDecimal.valueOf(110), new BigDecimal("170.00")), carService.getCarsWithPriceBetween(BigDecimal.valueOf(110), new BigDecimal("170.00")));
+            Assertions.assertEquals(expected.deleteCarsWithMileageLowerThan(1000.5), carService.deleteCarsWithMileageLowerThan(1000.5));
+            Assertions.assertEquals(expected.groupByColorAndCount(), carService.groupByColorAndCount());
+            Assertions.assertEquals(expected.groupByModelAndMostExpensiveCar(), carService.groupByModelAndMostExpensiveCar());
+            Assertions.assertEquals(expected.getMapOfComponentsAndCarsWithThatComponent(), carService.getMapOfComponentsAndCarsWithThatComponent());
+            Assertions.assertEquals(expected.getCarWithTheBiggestPrice(), carService.getCarWithTheBiggestPrice());
+        }
+    }
+
+    @Test
+    @DisplayName("Check if price range scan compares prices with different scales")
+    public void test3() {
+
+        // GIVEN
+        List<Car> cars = Arrays.asList(
+                Car.builder().model("A").price(new BigDecimal("99.99")).color(Color.RED).mileage(1).build(),
+                Car.builder().model("B").price(new BigDecimal("100")).color(Color.RED).mileage(1).build(),
+                Car.builder().model("C").price(new BigDecimal("150.5")).color(Color.RED).mileage(1).build(),
+                Car.builder().model("D").price(new BigDecimal("2E+2")).color(Color.RED).mileage(1).build(),
+                Car.builder().model("E").price(new BigDecimal("200.001")).color(Color.RED).mileage(1).build());
+
+        try (MappedCarStore store = new MappedCarStore(directory.getPath())) {
+            cars.forEach(store::add);
+
+            // WHEN
+            int[] ordinals = store.scanPriceBetween(new BigDecimal("100.00"), BigDecimal.valueOf(200));
+
+            // THEN
+            Assertions.assertArrayEquals(new int[]{1, 2, 3}, ordinals);
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+package kosiorek.michal.services;
+
+import kosiorek.michal.exceptions.MyException;
+import kosiorek.michal.model.Car;
+import kosiorek.michal.model.enums.Color;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class PersistentCarServiceTest {
+
+    private File directory;
+
+    @BeforeEach
+    public void init() throws IOException {
+        directory = Files.createTempDirectory("cars").toFile();
+    }
+
+    @AfterEach
+    public void clean() {
+        Arrays.stream(directory.listFiles()).forEach(File::delete);
+        directory.delete();
+    }
+
+    private List<Car> generateCars(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> Car.builder()
+                        .model("BMW")
+                        .color(Color.values()[i % Color.values().length])
+                        .price(new BigDecimal(100 + i + ".50"))
+                        .mileage(i)
+                        .components(List.of("ABS", "COMPONENT " + i))
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    @DisplayName("Check if cars added after seeding are restored from the log after reopening")
+    public void test1() {
+
+        //GIVEN
+        List<Car> cars = generateCars(10);
+        String expected;
+        try (PersistentCarService carService = PersistentCarService.open(directory.getPath(), "testcars4.json", 1000)) {
+            cars.forEach(carService::addCar);
+            expected = carService.getCarService().toString();
+        }
+
+        // WHEN
+        try (PersistentCarService carService = PersistentCarService.open(directory.getPath())) {
+
+            // THEN
+            Assertions.assertEquals(14, carService.getCarService().size());
+            Assertions.assertEquals(expected, carService.getCarService().toString());
+        }
+    }
+
+    @Test
+    @DisplayName("Check if compaction writes a new snapshot and removes older files")
+    public void test2() throws Exception {
+
+        //GIVEN
+        List<Car> cars = generateCars(25);
+        try (PersistentCarService carService = PersistentCarService.open(directory.getPath(), null, 10)) {
+
+            // WHEN
+            carService.addCars(cars.subList(0, 5));
+            cars.subList(5, 25).forEach(carService::addCar);
+            carService.compact().get();
+
+            // THEN
+            long generation = carService.getGeneration();
+            Assertions.assertTrue(generation > 0);
+            Assertions.assertEquals(List.of("cars-" + generation + ".snapshot", "cars-" + generation + ".wal"), Arrays.stream(directory.list()).sorted().collect(Collectors.toList()));
+        }
+
+        try (PersistentCarService carService = PersistentCarService.open(directory.getPath())) {
+            Assertions.assertEquals(cars, carService.getCarService().stream().collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    @DisplayName("Check if record which was not written completely is dropped")
+    public void test3() throws Exception {
+
+        //GIVEN
+        List<Car> cars = generateCars(3);
+        try (PersistentCarService carService = PersistentCarService.open(directory.getPath())) {
+            cars.forEach(carService::addCar);
+        }
+        File log = new File(directory, "cars-0.wal");
+        Files.write(log.toPath(), new byte[]{0, 0, 0, 50, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        // WHEN
+        try (PersistentCarService carService = PersistentCarService.open(directory.getPath())) {
+            carService.addCar(cars.get(0));
+        }
+
+        // THEN
+        try (PersistentCarService carService = PersistentCarService.open(directory.getPath())) {
+            Assertions.assertEquals(4, carService.getCarService().size());
+            Assertions.assertEquals(cars.get(0), carService.getCarService().stream().skip(3).findFirst().orElseThrow());
+        }
+    }
+
+    @Test
+    @DisplayName("Check if log fails for good after a failed write, so no later commit reports lost records as written")
+    public void test4() throws Exception {
+
+        //GIVEN
+        List<Car> cars = generateCars(2);
+        File file = new File(directory, "cars-0.wal");
+        Files.write(file.toPath(), new byte[0]);
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            CarWriteAheadLog log = new CarWriteAheadLog(channel);
+            long sequence = log.append(cars.get(0));
+
+            // WHEN
+            Assertions.assertThrows(MyException.class, () -> log.commit(sequence));
+
+            // THEN
+            Assertions.assertFalse(log.isCommitted(sequence));
+            Assertions.assertThrows(MyException.class, () -> log.append(cars.get(1)));
+            Assertions.assertThrows(MyException.class, () -> log.commit(sequence));
+            Assertions.assertThrows(MyException.class, log::commit);
+        }
+    }
+
+}
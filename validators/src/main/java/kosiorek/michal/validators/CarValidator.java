@@ -2,29 +2,44 @@ package kosiorek.michal.validators;
 
 import kosiorek.michal.model.Car;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 public class CarValidator implements Validator<Car> {
-    private Map<String, String> errors = new HashMap<>();
+
+    public static final String NULL_CAR = "car";
+
+    private static final List<ValidationRule<Car>> RULES = List.of(
+            new ValidationRule<>("model", CarValidator::isModelValid, car -> "not valid: " + car.getModel()),
+            new ValidationRule<>("components", CarValidator::areComponentsValid, car -> "not valid: " + car.getComponents())
+    );
+
+    private Map<String, String> errors = Collections.emptyMap();
 
     @Override
     public Map<String, String> validate(Car car) {
 
-        errors.clear();
-
         if (car == null) {
-            errors.put("car", "null");
+            errors = Collections.singletonMap(NULL_CAR, "null");
+            return errors;
         }
 
-        if (!isModelValid(car)) {
-            errors.put("model", "not valid: " + car.getModel());
-        }
+        // map is created only for cars which break at least one rule
+        Map<String, String> carErrors = null;
 
-        if (!areComponentsValid(car)) {
-            errors.put("components", "not valid: " + car.getComponents());
+        for (ValidationRule<Car> rule : RULES) {
+            if (!rule.test(car)) {
+                if (carErrors == null) {
+                    carErrors = new LinkedHashMap<>();
+                }
+                carErrors.put(rule.getName(), rule.message(car));
+            }
         }
 
+        errors = carErrors == null ? Collections.emptyMap() : carErrors;
         return errors;
     }
 
@@ -33,13 +48,67 @@ public class CarValidator implements Validator<Car> {
         return !errors.isEmpty();
     }
 
-    private boolean isModelValid(Car car) {
-        return car.getModel() != null && car.getModel().matches("[A-Z ]+");
+    // stateless check, safe to call from many threads
+    public static boolean isValid(Car car) {
+
+        if (car == null) {
+            return false;
+        }
+
+        for (ValidationRule<Car> rule : RULES) {
+            if (!rule.test(car)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // bit i is set when rule i is broken, bit getRules().size() when car is null - no messages are built
+    public static int failedRules(Car car) {
+
+        if (car == null) {
+            return 1 << RULES.size();
+        }
+
+        int failed = 0;
+        for (int i = 0; i < RULES.size(); i++) {
+            if (!RULES.get(i).test(car)) {
+                failed |= 1 << i;
+            }
+        }
+        return failed;
+    }
+
+    // names of failedRules bits
+    public static List<String> getFailureNames() {
+        List<String> names = new ArrayList<>();
+        RULES.forEach(rule -> names.add(rule.getName()));
+        names.add(NULL_CAR);
+        return names;
+    }
+
+    public static List<ValidationRule<Car>> getRules() {
+        return RULES;
     }
 
-    private boolean areComponentsValid(Car car) {
-        return car.getComponents() != null && car.getComponents().stream().allMatch(c -> c.matches("[A-Z ]+"));
+    private static boolean isModelValid(Car car) {
+        return StringRules.isUpperCaseOrSpace(car.getModel());
     }
 
+    private static boolean areComponentsValid(Car car) {
+
+        if (car.getComponents() == null) {
+            return false;
+        }
+
+        for (String component : car.getComponents()) {
+            if (!StringRules.isUpperCaseOrSpace(component)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
 
 }
@@ -0,0 +1,25 @@
+package kosiorek.michal.validators;
+
+public final class StringRules {
+
+    private StringRules() {
+    }
+
+    // same as matches("[A-Z ]+") but without compiling a pattern and allocating a matcher
+    public static boolean isUpperCaseOrSpace(CharSequence text) {
+
+        if (text == null || text.length() == 0) {
+            return false;
+        }
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if ((c < 'A' || c > 'Z') && c != ' ') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+}
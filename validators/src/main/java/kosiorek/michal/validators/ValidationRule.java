@@ -0,0 +1,31 @@
+package kosiorek.michal.validators;
+
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+// single named check, message is built only when the check fails
+public final class ValidationRule<T> {
+
+    private final String name;
+    private final Predicate<T> predicate;
+    private final Function<T, String> message;
+
+    public ValidationRule(String name, Predicate<T> predicate, Function<T, String> message) {
+        this.name = name;
+        this.predicate = predicate;
+        this.message = message;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean test(T t) {
+        return predicate.test(t);
+    }
+
+    public String message(T t) {
+        return message.apply(t);
+    }
+
+}